@@ -1,10 +1,10 @@
 package org.jenkins_ci.update_center.repo;
 
-import hudson.util.VersionNumber;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
@@ -14,21 +14,29 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.util.EntityUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.model.Checksums;
 import org.jenkins_ci.update_center.model.GenericArtifactInfo;
 import org.jenkins_ci.update_center.model.HPI;
 import org.jenkins_ci.update_center.model.HudsonWar;
 import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -43,24 +51,90 @@ import java.util.regex.Pattern;
  */
 public class ArtifactoryRepositoryImpl extends MavenRepository {
 
-    private static String REPO_URL = "http://repo.jenkins-ci.org";
-    private static List<String> QUERY_REPO_KEYS = new ArrayList<String>();
+    public static final String DEFAULT_REPO_URL = "http://repo.jenkins-ci.org";
     private static String RESOLVE_REPO_KEY = "public";
 
+    /**
+     * Maximum number of concurrent connections to the repository.
+     */
+    private static final int MAX_CONNECTIONS = 20;
+
+    private final List<String> queryRepoKeys = new ArrayList<String>();
+
+    private String repoUrl;
     private DefaultHttpClient client;
-    private HttpHost targetHost = new HttpHost("repo.jenkins-ci.org", 80, "http");
+    private HttpHost targetHost;
     private BasicHttpContext localcontext;
 
+    /**
+     * Where downloaded artifacts are kept, in the Maven repository layout.
+     */
+    private LocalRepository localRepository =
+            new LocalRepository(new File(new File(System.getProperty("user.home")), ".m2/repository"));
+    private BlobStore blobs;
+
     public ArtifactoryRepositoryImpl() {
-        client = new DefaultHttpClient();
-        QUERY_REPO_KEYS.add("releases");
-        QUERY_REPO_KEYS.add("javanet2-cache");
-        QUERY_REPO_KEYS.add("maven.jenkins-ci.org-cache");
+        this(DEFAULT_REPO_URL);
+    }
+
+    /**
+     * @param repoUrl Base URL of the Artifactory instance, such as {@code http://localhost:8081}. Used to run against
+     *                a stand-in server instead of repo.jenkins-ci.org.
+     */
+    public ArtifactoryRepositoryImpl(String repoUrl) {
+        // artifacts are resolved from several threads at once
+        ThreadSafeClientConnManager connections = new ThreadSafeClientConnManager();
+        connections.setMaxTotal(MAX_CONNECTIONS);
+        connections.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        client = new DefaultHttpClient(connections);
+        queryRepoKeys.add("releases");
+        queryRepoKeys.add("javanet2-cache");
+        queryRepoKeys.add("maven.jenkins-ci.org-cache");
+        setRepositoryUrl(repoUrl);
+    }
+
+    public void setRepositoryUrl(String repoUrl) {
+        URI uri = URI.create(StringUtils.removeEnd(repoUrl, "/"));
+        this.repoUrl = uri.toString();
+        targetHost = targetHost(uri);
+        // the credentials are bound to the host
+        setCredentials(username, password);
+    }
+
+    /**
+     * The host and port to connect to, with the default port of the scheme when the URL has none.
+     */
+    static HttpHost targetHost(URI uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return new HttpHost(uri.getHost(), port, uri.getScheme());
+    }
+
+    public String getRepositoryUrl() {
+        return repoUrl;
+    }
+
+    public void setLocalRepository(File localRepository) {
+        LocalRepository r = new LocalRepository(localRepository);
+        r.setBlobStore(blobs);
+        this.localRepository = r;
+    }
+
+    /**
+     * Stores the downloaded artifacts in the given blob store, so that the same contents are only kept once.
+     */
+    public void setBlobStore(BlobStore blobs) {
+        this.blobs = blobs;
+        localRepository.setBlobStore(blobs);
     }
 
     @Override
     public void setCredentials(String username, String password) {
         super.setCredentials(username, password);
+        client.getCredentialsProvider().clear();
+        localcontext = null;
         if (StringUtils.isNotBlank(username)) {
 
             client.getCredentialsProvider().setCredentials(
@@ -88,54 +162,70 @@ public class ArtifactoryRepositoryImpl extends MavenRepository {
             filePathBuilder.append("-").append(classifier);
         }
         String filePath = filePathBuilder.append(".").append(type).toString();
-        File resolvedFilePath = new File(new File(System.getProperty("user.home"), ".m2/repository"), filePath);
-        if (resolvedFilePath.exists()) {
-            return resolvedFilePath;
-        }
-        HttpResponse fileGetResponse = client.execute(targetHost,
-                new HttpGet(REPO_URL + "/" + RESOLVE_REPO_KEY + "/" + filePath), localcontext);
-        HttpEntity fileEntity = fileGetResponse.getEntity();
-        StatusLine fileGetStatus = fileGetResponse.getStatusLine();
-        if (HttpStatus.SC_OK != fileGetStatus.getStatusCode()) {
-            System.out.println("Unable to download file: " + filePath);
-            EntityUtils.consume(fileEntity);
-            return null;
-        }
-        InputStream fileContent = null;
-        try {
-            fileContent = fileEntity.getContent();
-            if (!resolvedFilePath.getParentFile().exists()) {
-                resolvedFilePath.getParentFile().mkdirs();
+        return localRepository.resolve(filePath, downloader);
+    }
+
+    /**
+     * Downloads from the virtual repository that aggregates all the others.
+     */
+    private final LocalRepository.Downloader downloader = new LocalRepository.Downloader() {
+        public Checksums download(String filePath, File to) throws IOException {
+            HttpResponse fileGetResponse = execute(new HttpGet(repoUrl + "/" + RESOLVE_REPO_KEY + "/" + filePath),
+                    "download");
+            HttpEntity fileEntity = fileGetResponse.getEntity();
+            StatusLine fileGetStatus = fileGetResponse.getStatusLine();
+            if (HttpStatus.SC_OK != fileGetStatus.getStatusCode()) {
+                System.out.println("Unable to download file: " + filePath);
+                EntityUtils.consume(fileEntity);
+                return null;
             }
-            if (!resolvedFilePath.exists()) {
-                resolvedFilePath.createNewFile();
+            InputStream fileContent = null;
+            try {
+                fileContent = fileEntity.getContent();
+                OutputStream out = new FileOutputStream(to);
+                Checksums checksums;
+                try {
+                    checksums = Checksums.copy(fileContent, out);
+                } finally {
+                    out.close();
+                }
+                Metrics.counter(Metrics.DOWNLOADED_BYTES).add(to.length());
+                checksums.verify(header(fileGetResponse, "X-Checksum-Sha1"),
+                        header(fileGetResponse, "X-Checksum-Sha256"), filePath);
+                return checksums;
+            } finally {
+                EntityUtils.consume(fileEntity);
+                IOUtils.closeQuietly(fileContent);
             }
-            IOUtils.copy(fileContent, new FileOutputStream(resolvedFilePath));
-        } finally {
-            EntityUtils.consume(fileEntity);
-            IOUtils.closeQuietly(fileContent);
         }
 
-        return resolvedFilePath;
-    }
+        public Checksums checksums(String filePath) throws IOException {
+            HttpResponse headResponse = execute(new HttpHead(repoUrl + "/" + RESOLVE_REPO_KEY + "/" + filePath),
+                    "checksums");
+            EntityUtils.consume(headResponse.getEntity());
+            if (HttpStatus.SC_OK != headResponse.getStatusLine().getStatusCode()) {
+                return null;
+            }
+            return new Checksums(header(headResponse, "X-Checksum-Sha1"), header(headResponse, "X-Checksum-Sha256"));
+        }
+    };
 
     @Override
-    protected void listWar(TreeMap<VersionNumber, HudsonWar> r, String groupId, VersionNumber cap) throws IOException {
+    protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) throws IOException {
         Pattern warPathPattern = Pattern.compile("(?:.+)/([^/]+)/" +
                 StringUtils.replace(StringUtils.replace(groupId, ".", "/"), "-", "\\-") +
                 "/([^/]+)/([^/]+)/\\2\\-\\3\\.war");
 
-        StringBuilder searchUrlBuilder = new StringBuilder(REPO_URL).append("/api/search/gavc?g=")
+        StringBuilder searchUrlBuilder = new StringBuilder(repoUrl).append("/api/search/gavc?g=")
                 .append(URLEncoder.encode(groupId, "utf-8")).append("&a=*war*&repos=");
-        Iterator<String> repoKeyIterator = QUERY_REPO_KEYS.iterator();
+        Iterator<String> repoKeyIterator = queryRepoKeys.iterator();
         while (repoKeyIterator.hasNext()) {
             searchUrlBuilder.append(repoKeyIterator.next());
             if (repoKeyIterator.hasNext()) {
                 searchUrlBuilder.append(",");
             }
         }
-        HttpResponse searchResponse = client.execute(targetHost, new HttpGet(searchUrlBuilder.toString()),
-                localcontext);
+        HttpResponse searchResponse = execute(new HttpGet(searchUrlBuilder.toString()), "searchWars");
         HttpEntity searchResultEntity = searchResponse.getEntity();
         StatusLine statusLine = searchResponse.getStatusLine();
         if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
@@ -152,8 +242,7 @@ public class ArtifactoryRepositoryImpl extends MavenRepository {
                         new GenericArtifactInfo(warMatcher.group(1), groupId, warMatcher.group(2), warMatcher.group(3),
                                 null, "war"));
                 if (isWarValid(warInfo, cap)) {
-                    VersionNumber v = new VersionNumber(warInfo.version);
-                    r.put(v, warInfo);
+                    r.put(warInfo.getVersionKey(), warInfo);
                 }
             }
         }
@@ -163,17 +252,16 @@ public class ArtifactoryRepositoryImpl extends MavenRepository {
     protected void listHudsonPlugins(Map<String, PluginHistory> plugins) throws IOException {
         Pattern hpiPathPattern = Pattern.compile("(?:.+)/api/storage/([^/]+)/(.+?)/([^/]+)/([^/]+)/\\3\\-\\4\\.hpi");
 
-        StringBuilder searchUrlBuilder = new StringBuilder(REPO_URL).append("/api/search/artifact?name=*.hpi")
+        StringBuilder searchUrlBuilder = new StringBuilder(repoUrl).append("/api/search/artifact?name=*.hpi")
                 .append("&repos=");
-        Iterator<String> repoKeyIterator = QUERY_REPO_KEYS.iterator();
+        Iterator<String> repoKeyIterator = queryRepoKeys.iterator();
         while (repoKeyIterator.hasNext()) {
             searchUrlBuilder.append(repoKeyIterator.next());
             if (repoKeyIterator.hasNext()) {
                 searchUrlBuilder.append(",");
             }
         }
-        HttpResponse searchResponse = client.execute(targetHost, new HttpGet(searchUrlBuilder.toString()),
-                localcontext);
+        HttpResponse searchResponse = execute(new HttpGet(searchUrlBuilder.toString()), "searchPlugins");
         HttpEntity searchResultEntity = searchResponse.getEntity();
         StatusLine statusLine = searchResponse.getStatusLine();
         if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
@@ -182,6 +270,7 @@ public class ArtifactoryRepositoryImpl extends MavenRepository {
             return;
         }
         JSONArray hpiSearchResults = getSearchResultArray(searchResultEntity);
+        List<HPI> hpis = new ArrayList<HPI>();
         for (Object hpiSearchResult : hpiSearchResults.toArray()) {
             String hpiInfoUri = ((JSONObject) hpiSearchResult).getString("uri");
             Matcher hpiMatcher = hpiPathPattern.matcher(hpiInfoUri);
@@ -190,15 +279,30 @@ public class ArtifactoryRepositoryImpl extends MavenRepository {
                         new GenericArtifactInfo(hpiMatcher.group(1), StringUtils.replace(hpiMatcher.group(2), "/", "."),
                                 hpiMatcher.group(3), hpiMatcher.group(4), null, "hpi"));
                 if (isHpiValid(hpiInfo)) {
-                    PluginHistory p = plugins.get(hpiInfo.artifact.artifactId);
-                    if (p == null) {
-                        plugins.put(hpiInfo.artifact.artifactId, p = new PluginHistory(hpiInfo.artifact.artifactId));
-                    }
-                    p.addArtifact(hpiInfo);
-                    p.groupId.add(hpiInfo.artifact.groupId);
+                    hpis.add(hpiInfo);
                 }
             }
         }
+        addHudsonPlugins(plugins, hpis);
+    }
+
+    /**
+     * Sends a request, recording its latency and response code under the given name.
+     */
+    private HttpResponse execute(HttpRequestBase request, String call) throws IOException {
+        long start = System.nanoTime();
+        // the context gets the state of each request, so only the auth cache can be shared between threads
+        HttpResponse response = client.execute(targetHost, request,
+                localcontext == null ? null : new BasicHttpContext(localcontext));
+        Metrics.histogram(Metrics.HTTP_REQUEST_SECONDS, "call", call).observeSince(start);
+        Metrics.counter(Metrics.HTTP_RESPONSES, "call", call,
+                "code", String.valueOf(response.getStatusLine().getStatusCode())).increment();
+        return response;
+    }
+
+    private static String header(HttpResponse response, String name) {
+        Header h = response.getFirstHeader(name);
+        return h == null ? null : h.getValue();
     }
 
     private JSONArray getSearchResultArray(HttpEntity searchResultEntity) throws IOException {
@@ -0,0 +1,382 @@
+package org.jenkins_ci.update_center.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters, gauges and histograms collected during a run, written out in the Prometheus text format at the end so
+ * that monitoring can alert on slow runs and tell which subsystem got slower.
+ * <p/>
+ * Metrics are created on first use and identified by their name and label values. The names used by the generator
+ * are the constants of this class. Everything is thread safe.
+ */
+public final class Metrics {
+    /**
+     * Time spent in each phase of the generation, labelled by {@code phase}. Phases nest: "toJson" includes the
+     * "digest" of the artifact, for instance.
+     */
+    public static final String PHASE_SECONDS = "update_center_phase_seconds";
+    /**
+     * Time until the response headers of the Maven repository are received, labelled by {@code call}.
+     */
+    public static final String HTTP_REQUEST_SECONDS = "update_center_http_request_seconds";
+    /**
+     * Responses of the Maven repository, labelled by {@code call} and {@code code}.
+     */
+    public static final String HTTP_RESPONSES = "update_center_http_responses_total";
+    /**
+     * Bytes downloaded from the Maven repository.
+     */
+    public static final String DOWNLOADED_BYTES = "update_center_downloaded_bytes_total";
+    /**
+     * Duration of the wiki calls, labelled by {@code call}.
+     */
+    public static final String WIKI_REQUEST_SECONDS = "update_center_wiki_request_seconds";
+    /**
+     * Lookups in the caches, labelled by {@code cache} and {@code result}, which is either "hit" or "miss".
+     */
+    public static final String CACHE_REQUESTS = "update_center_cache_requests_total";
+    /**
+     * Artifacts asked to be resolved ahead of time, labelled by {@code result}, which is either "queued" or "dropped"
+     * when the queue was full.
+     */
+    public static final String PREFETCHES = "update_center_prefetches_total";
+    /**
+     * Files of the published trees, labelled by the {@code status} of {@code PublishManifest}: "A", "M", "D" or "=".
+     */
+    public static final String PUBLISHED_FILES = "update_center_published_files_total";
+    /**
+     * Plugins written to the update center.
+     */
+    public static final String PLUGINS = "update_center_plugins_total";
+    /**
+     * Duration of the whole run.
+     */
+    public static final String RUN_SECONDS = "update_center_run_seconds";
+    /**
+     * 1 if the run completed, 0 if it failed.
+     */
+    public static final String RUN_SUCCESS = "update_center_run_success";
+    /**
+     * When the run ended, in seconds since the epoch.
+     */
+    public static final String RUN_TIMESTAMP = "update_center_run_timestamp_seconds";
+
+    private static final Map<String, String> HELP = new TreeMap<String, String>();
+
+    static {
+        HELP.put(PHASE_SECONDS, "Time spent in each phase of the generation");
+        HELP.put(HTTP_REQUEST_SECONDS, "Time to the response headers of the Maven repository");
+        HELP.put(HTTP_RESPONSES, "Responses of the Maven repository by status code");
+        HELP.put(DOWNLOADED_BYTES, "Bytes downloaded from the Maven repository");
+        HELP.put(WIKI_REQUEST_SECONDS, "Duration of the wiki calls");
+        HELP.put(CACHE_REQUESTS, "Cache lookups by result");
+        HELP.put(PREFETCHES, "Artifacts asked to be resolved ahead of time");
+        HELP.put(PUBLISHED_FILES, "Files of the published trees by change since the previous run");
+        HELP.put(PLUGINS, "Plugins written to the update center");
+        HELP.put(RUN_SECONDS, "Duration of the whole run");
+        HELP.put(RUN_SUCCESS, "Whether the run completed");
+        HELP.put(RUN_TIMESTAMP, "End of the run in seconds since the epoch");
+    }
+
+    /**
+     * Upper bounds of the histogram buckets, in seconds.
+     */
+    private static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60, 300};
+
+    private static final ConcurrentMap<String, Metric> METRICS = new ConcurrentHashMap<String, Metric>();
+
+    /**
+     * The metrics of {@link #phase(String, long)} by phase, and of {@link #cache(String, boolean)} by cache, so that
+     * these don't even build the key of the metric, being called for every HTTP call, file or lock.
+     */
+    private static final ConcurrentMap<String, Histogram> PHASES = new ConcurrentHashMap<String, Histogram>();
+    private static final ConcurrentMap<String, Counter[]> CACHES = new ConcurrentHashMap<String, Counter[]>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param labels Label names and values, alternating.
+     */
+    public static Counter counter(String name, String... labels) {
+        String labelText = labels(name, labels);
+        Metric m = METRICS.get(key(name, labelText));
+        return (Counter) (m != null ? check(m, Counter.class) : add(new Counter(name, labelText)));
+    }
+
+    public static Gauge gauge(String name, String... labels) {
+        String labelText = labels(name, labels);
+        Metric m = METRICS.get(key(name, labelText));
+        return (Gauge) (m != null ? check(m, Gauge.class) : add(new Gauge(name, labelText)));
+    }
+
+    public static Histogram histogram(String name, String... labels) {
+        String labelText = labels(name, labels);
+        Metric m = METRICS.get(key(name, labelText));
+        return (Histogram) (m != null ? check(m, Histogram.class) : add(new Histogram(name, labelText)));
+    }
+
+    /**
+     * Records the time spent in a phase that started at the given {@link System#nanoTime()}.
+     */
+    public static void phase(String phase, long startNanos) {
+        Histogram h = PHASES.get(phase);
+        if (h == null) {
+            h = histogram(PHASE_SECONDS, "phase", phase);
+            PHASES.put(phase, h);
+        }
+        h.observeSince(startNanos);
+    }
+
+    /**
+     * Counts a hit or a miss of the given cache.
+     */
+    public static void cache(String cache, boolean hit) {
+        Counter[] c = CACHES.get(cache);
+        if (c == null) {
+            c = new Counter[] {
+                    counter(CACHE_REQUESTS, "cache", cache, "result", "hit"),
+                    counter(CACHE_REQUESTS, "cache", cache, "result", "miss")};
+            CACHES.put(cache, c);
+        }
+        c[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * Formats label names and values, alternating, as in the exposition format.
+     */
+    private static String labels(String name, String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs: " + name);
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (b.length() > 0) {
+                b.append(',');
+            }
+            b.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")
+                    .replace("\n", "\\n")).append('"');
+        }
+        return b.toString();
+    }
+
+    private static String key(String name, String labels) {
+        return name + '{' + labels + '}';
+    }
+
+    private static Metric add(Metric m) {
+        Metric existing = METRICS.putIfAbsent(m.key, m);
+        return existing == null ? m : check(existing, m.getClass());
+    }
+
+    private static Metric check(Metric m, Class<? extends Metric> type) {
+        if (m.getClass() != type) {
+            throw new IllegalArgumentException(m.name + " is already a " + m.type());
+        }
+        return m;
+    }
+
+    /**
+     * Forgets all the metrics.
+     */
+    public static void reset() {
+        METRICS.clear();
+        PHASES.clear();
+        CACHES.clear();
+    }
+
+    /**
+     * Writes all the metrics in the Prometheus text exposition format.
+     */
+    public static void writeTo(Writer w) throws IOException {
+        PrintWriter out = new PrintWriter(w);
+        String family = null;
+        for (Metric m : new TreeMap<String, Metric>(METRICS).values()) {
+            if (!m.name.equals(family)) {
+                family = m.name;
+                if (HELP.containsKey(family)) {
+                    out.println("# HELP " + family + " " + HELP.get(family));
+                }
+                out.println("# TYPE " + family + " " + m.type());
+            }
+            m.writeTo(out);
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Failed to write the metrics");
+        }
+    }
+
+    /**
+     * Writes all the metrics to the given file. The file is replaced in one step, as the node exporter textfile
+     * collector expects.
+     */
+    public static void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer w = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+        try {
+            writeTo(w);
+        } finally {
+            w.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+
+    private static String format(double v) {
+        if (v == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            return Long.toString((long) v);
+        }
+        return Double.toString(v);
+    }
+
+    public abstract static class Metric {
+        final String name;
+        final String labels;
+        final String key;
+
+        Metric(String name, String labels) {
+            this.name = name;
+            this.labels = labels;
+            this.key = key(name, labels);
+        }
+
+        abstract String type();
+
+        abstract void writeTo(PrintWriter out);
+
+        /**
+         * Formats the labels of this metric plus an extra one.
+         */
+        String labels(String extra) {
+            String all = labels.length() == 0 ? extra : extra == null ? labels : labels + ',' + extra;
+            return all == null || all.length() == 0 ? "" : '{' + all + '}';
+        }
+    }
+
+    public static final class Counter extends Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name, String labels) {
+            super(name, labels);
+        }
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long n) {
+            value.addAndGet(n);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        String type() {
+            return "counter";
+        }
+
+        void writeTo(PrintWriter out) {
+            out.println(name + labels(null) + " " + value.get());
+        }
+    }
+
+    public static final class Gauge extends Metric {
+        private volatile double value;
+
+        Gauge(String name, String labels) {
+            super(name, labels);
+        }
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        public double get() {
+            return value;
+        }
+
+        String type() {
+            return "gauge";
+        }
+
+        void writeTo(PrintWriter out) {
+            out.println(name + labels(null) + " " + format(value));
+        }
+    }
+
+    /**
+     * Distribution of durations, in seconds.
+     */
+    public static final class Histogram extends Metric {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumNanos = new AtomicLong();
+
+        Histogram(String name, String labels) {
+            super(name, labels);
+        }
+
+        public void observeNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets.incrementAndGet(i);
+                    break;
+                }
+            }
+            count.incrementAndGet();
+            sumNanos.addAndGet(nanos);
+        }
+
+        /**
+         * Records the time elapsed since the given {@link System#nanoTime()}.
+         */
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getSum() {
+            return sumNanos.get() / 1e9;
+        }
+
+        String type() {
+            return "histogram";
+        }
+
+        void writeTo(PrintWriter out) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets.get(i);
+                out.println(name + "_bucket" + labels("le=\"" + format(BUCKETS[i]) + '"') + " " + cumulative);
+            }
+            long n = count.get();
+            out.println(name + "_bucket" + labels("le=\"+Inf\"") + " " + n);
+            out.println(name + "_sum" + labels(null) + " " + format(getSum()));
+            out.println(name + "_count" + labels(null) + " " + n);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkins_ci.update_center.metrics;
+
+import net.sf.json.util.JSONUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records spans of work, per thread, for a timeline of the run in the Chrome Trace Event format, which
+ * chrome://tracing and https://ui.perfetto.dev display offline.
+ * <p/>
+ * Recording is off until {@link #start()}. While off, {@link #begin(String, Object)} returns a shared span that does
+ * nothing, so instrumented code only pays for a volatile read.
+ * <pre>
+ * Tracer.Span span = Tracer.begin("resolve", artifact);
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ */
+public final class Tracer {
+    private static volatile boolean enabled;
+    private static long origin;
+    private static final Queue<Span> SPANS = new ConcurrentLinkedQueue<Span>();
+    private static final Map<Long, String> THREADS = new ConcurrentHashMap<Long, String>();
+
+    private static final Span NOOP = new Span(null, null) {
+        @Override
+        public void end() {
+        }
+    };
+
+    private Tracer() {
+    }
+
+    /**
+     * Discards what was recorded so far and starts recording.
+     */
+    public static void start() {
+        SPANS.clear();
+        THREADS.clear();
+        origin = System.nanoTime();
+        enabled = true;
+    }
+
+    /**
+     * Stops recording. What was recorded is kept until the next {@link #start()}.
+     */
+    public static void stop() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a span on the current thread.
+     *
+     * @param detail What the span works on, such as an artifact or a page title. Only converted to a string if
+     *               recording is on.
+     */
+    public static Span begin(String name, Object detail) {
+        if (!enabled) {
+            return NOOP;
+        }
+        return new Span(name, detail);
+    }
+
+    /**
+     * Stops recording and writes what was recorded as a JSON trace.
+     */
+    public static void writeTo(File file) throws IOException {
+        stop();
+        Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writeTo(w);
+        } finally {
+            w.close();
+        }
+    }
+
+    static void writeTo(Writer w) throws IOException {
+        w.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        boolean first = true;
+        for (Map.Entry<Long, String> t : THREADS.entrySet()) {
+            if (!first) {
+                w.write(",\n");
+            }
+            first = false;
+            w.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + t.getKey()
+                    + ",\"args\":{\"name\":" + JSONUtils.quote(t.getValue()) + "}}");
+        }
+        for (Span s : SPANS) {
+            if (!first) {
+                w.write(",\n");
+            }
+            first = false;
+            w.write("{\"name\":" + JSONUtils.quote(s.name) + ",\"ph\":\"X\",\"pid\":1,\"tid\":" + s.thread
+                    + ",\"ts\":" + micros(s.start - origin) + ",\"dur\":" + micros(s.end - s.start));
+            if (s.detail != null) {
+                w.write(",\"args\":{\"detail\":" + JSONUtils.quote(s.detail.toString()) + "}");
+            }
+            w.write("}");
+        }
+        w.write("\n]}\n");
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "." + String.format("%03d", nanos % 1000);
+    }
+
+    public static class Span {
+        private final String name;
+        /**
+         * What the span works on, until it ends and only its string is kept, so that a recording doesn't keep the
+         * jobs and artifacts of the whole run in memory.
+         */
+        private Object detail;
+        private final long thread;
+        private final long start;
+        private long end;
+
+        private Span(String name, Object detail) {
+            this.name = name;
+            this.detail = detail;
+            Thread t = Thread.currentThread();
+            this.thread = t.getId();
+            this.start = System.nanoTime();
+            if (name != null && !THREADS.containsKey(thread)) {
+                THREADS.put(thread, t.getName());
+            }
+        }
+
+        public void end() {
+            end = System.nanoTime();
+            if (enabled) {
+                if (detail != null) {
+                    detail = detail.toString();
+                }
+                SPANS.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.jenkins_ci.update_center.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coordinates of discovered artifacts, stored column by column.
+ * <p/>
+ * A repository lists hundreds of thousands of plugin versions, and they are all kept for the whole run. Storing each
+ * as a {@link GenericArtifactInfo} with its own strings costs hundreds of bytes per version. Here repositories,
+ * group IDs, artifact IDs, classifiers and packagings are kept once each in dictionaries and referenced by number,
+ * and the characters of the versions are packed in one array, which brings a version down to a few dozen bytes.
+ * The parsed versions are kept the same way, so that they are not parsed again each time they are compared.
+ * <p/>
+ * Each artifact is a row. {@link GenericArtifactInfo}s are created on demand by {@link #get(int)}, and share the
+ * strings of the dictionaries.
+ */
+public final class ArtifactCatalog {
+    private final Dictionary repositories = new Dictionary();
+    private final Dictionary groupIds = new Dictionary();
+    private final Dictionary artifactIds = new Dictionary();
+    private final Dictionary classifiers = new Dictionary();
+    private final Dictionary packagings = new Dictionary();
+
+    private int size;
+    private int[] repository = new int[16];
+    private int[] groupId = new int[16];
+    private int[] artifactId = new int[16];
+    private int[] classifier = new int[16];
+    private int[] packaging = new int[16];
+    /**
+     * The version of row i is {@code versions[versionStart[i]..versionStart[i+1]]}.
+     */
+    private int[] versionStart = new int[17];
+    private char[] versions = new char[256];
+    /**
+     * The {@link VersionKey#digits()} of row i are {@code digits[digitStart[i]..digitStart[i+1]]}, unless the version
+     * isn't purely numeric, in which case the row is set in {@link #nonNumeric} and its key is in {@link #otherKeys}.
+     */
+    private int[] digitStart = new int[17];
+    private int[] digits = new int[64];
+    private final BitSet nonNumeric = new BitSet();
+    private final Map<Integer, VersionKey> otherKeys = new HashMap<Integer, VersionKey>();
+
+    /**
+     * Adds an artifact and returns its row.
+     */
+    public int add(GenericArtifactInfo a) {
+        return add(a, VersionKey.of(a.version));
+    }
+
+    /**
+     * Adds an artifact whose version has already been parsed, and returns its row.
+     */
+    public synchronized int add(GenericArtifactInfo a, VersionKey key) {
+        if (size == repository.length) {
+            int capacity = size * 2;
+            repository = Arrays.copyOf(repository, capacity);
+            groupId = Arrays.copyOf(groupId, capacity);
+            artifactId = Arrays.copyOf(artifactId, capacity);
+            classifier = Arrays.copyOf(classifier, capacity);
+            packaging = Arrays.copyOf(packaging, capacity);
+            versionStart = Arrays.copyOf(versionStart, capacity + 1);
+            digitStart = Arrays.copyOf(digitStart, capacity + 1);
+        }
+        int start = versionStart[size];
+        int end = start + a.version.length();
+        if (end > versions.length) {
+            versions = Arrays.copyOf(versions, Math.max(end, versions.length * 2));
+        }
+        a.version.getChars(0, a.version.length(), versions, start);
+
+        int[] d = key.digits();
+        int digitEnd = digitStart[size];
+        if (d == null) {
+            nonNumeric.set(size);
+            otherKeys.put(size, key);
+        } else {
+            if (digitEnd + d.length > digits.length) {
+                digits = Arrays.copyOf(digits, Math.max(digitEnd + d.length, digits.length * 2));
+            }
+            System.arraycopy(d, 0, digits, digitEnd, d.length);
+            digitEnd += d.length;
+        }
+
+        repository[size] = repositories.code(a.repository);
+        groupId[size] = groupIds.code(a.groupId);
+        artifactId[size] = artifactIds.code(a.artifactId);
+        classifier[size] = classifiers.code(a.classifier);
+        packaging[size] = packagings.code(a.packaging);
+        versionStart[size + 1] = end;
+        digitStart[size + 1] = digitEnd;
+        return size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Creates the {@link GenericArtifactInfo} of a row.
+     */
+    public synchronized GenericArtifactInfo get(int row) {
+        check(row);
+        return new GenericArtifactInfo(repositories.get(repository[row]), groupIds.get(groupId[row]),
+                artifactIds.get(artifactId[row]), getVersion(row), classifiers.get(classifier[row]),
+                packagings.get(packaging[row]));
+    }
+
+    public synchronized String getVersion(int row) {
+        check(row);
+        return new String(versions, versionStart[row], versionStart[row + 1] - versionStart[row]);
+    }
+
+    /**
+     * The version of a row, as parsed when it was added.
+     */
+    public synchronized VersionKey getVersionKey(int row) {
+        check(row);
+        if (nonNumeric.get(row)) {
+            return otherKeys.get(row);
+        }
+        return VersionKey.numeric(getVersion(row), Arrays.copyOfRange(digits, digitStart[row], digitStart[row + 1]));
+    }
+
+    public synchronized String getGroupId(int row) {
+        check(row);
+        return groupIds.get(groupId[row]);
+    }
+
+    public synchronized String getArtifactId(int row) {
+        check(row);
+        return artifactIds.get(artifactId[row]);
+    }
+
+    private void check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("No row " + row + " in a catalog of " + size);
+        }
+    }
+
+    /**
+     * Numbers distinct strings in the order they are first seen. -1 stands for null.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<String, Integer>();
+        private final List<String> values = new ArrayList<String>();
+
+        int code(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String get(int code) {
+            return code < 0 ? null : values.get(code);
+        }
+    }
+}
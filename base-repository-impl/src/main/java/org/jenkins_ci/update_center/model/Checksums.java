@@ -0,0 +1,156 @@
+package org.jenkins_ci.update_center.model;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The SHA-1 and SHA-256 digests of an artifact file, in hex.
+ * <p/>
+ * They are computed while the file is downloaded, and kept next to it in {@code .sha1} and {@code .sha256} files as
+ * in a Maven repository, so that it never has to be read again to be hashed.
+ */
+public final class Checksums {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public final String sha1;
+    public final String sha256;
+
+    public Checksums(String sha1, String sha256) {
+        this.sha1 = sha1;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Copies a stream, hashing what goes through.
+     */
+    public static Checksums copy(InputStream in, OutputStream out) throws IOException {
+        MessageDigest sha1 = newDigest("SHA1");
+        MessageDigest sha256 = newDigest("SHA-256");
+        byte[] buf = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            sha1.update(buf, 0, len);
+            sha256.update(buf, 0, len);
+            if (out != null) {
+                out.write(buf, 0, len);
+            }
+        }
+        return new Checksums(new String(Hex.encodeHex(sha1.digest())), new String(Hex.encodeHex(sha256.digest())));
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the checksums of a file, from the files next to it if they are up to date, or else by hashing it and
+     * keeping them there for the next time.
+     */
+    public static Checksums of(File f) throws IOException {
+        Checksums c = read(f);
+        Metrics.cache("checksums", c != null);
+        if (c != null) {
+            return c;
+        }
+        c = hash(f);
+        try {
+            c.writeFor(f);
+        } catch (IOException e) {
+            // only a cache, so a read-only repository is fine
+        }
+        return c;
+    }
+
+    /**
+     * Computes the checksums of a file.
+     */
+    public static Checksums hash(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        try {
+            return copy(in, null);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the checksums kept next to a file, or null if they or the file aren't there, or they are older than it.
+     */
+    public static Checksums read(File f) {
+        File sha1 = sidecar(f, ".sha1");
+        File sha256 = sidecar(f, ".sha256");
+        long lastModified = f.lastModified();
+        if (lastModified == 0 || sha1.lastModified() < lastModified || sha256.lastModified() < lastModified) {
+            return null;
+        }
+        try {
+            return new Checksums(FileUtils.readFileToString(sha1, "US-ASCII").trim(),
+                    FileUtils.readFileToString(sha256, "US-ASCII").trim());
+        } catch (IOException e) {
+            return null; // deleted in the meantime
+        }
+    }
+
+    /**
+     * Keeps these checksums next to the given file.
+     */
+    public void writeFor(File f) throws IOException {
+        write(sidecar(f, ".sha1"), sha1);
+        write(sidecar(f, ".sha256"), sha256);
+    }
+
+    private static File sidecar(File f, String extension) {
+        return new File(f.getPath() + extension);
+    }
+
+    private static void write(File f, String contents) throws IOException {
+        File tmp = File.createTempFile(f.getName(), ".tmp", f.getParentFile());
+        try {
+            FileUtils.writeStringToFile(tmp, contents, "US-ASCII");
+            if (!tmp.renameTo(f) && !f.exists()) {
+                throw new IOException("Failed to rename " + tmp + " to " + f);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Checks these checksums against those the server announced, either of which may be null if it didn't.
+     */
+    public void verify(String expectedSha1, String expectedSha256, String what) throws IOException {
+        if (expectedSha1 != null && !expectedSha1.trim().equalsIgnoreCase(sha1)) {
+            throw new IOException("SHA-1 of " + what + " is " + sha1 + " instead of " + expectedSha1);
+        }
+        if (expectedSha256 != null && !expectedSha256.trim().equalsIgnoreCase(sha256)) {
+            throw new IOException("SHA-256 of " + what + " is " + sha256 + " instead of " + expectedSha256);
+        }
+    }
+
+    /**
+     * The SHA-1 digest in Base64, as in the update center.
+     */
+    public String getSha1Base64() throws IOException {
+        try {
+            return new String(Base64.encodeBase64(Hex.decodeHex(sha1.toCharArray())));
+        } catch (DecoderException e) {
+            throw (IOException) new IOException("Malformed SHA-1 " + sha1).initCause(e);
+        }
+    }
+}
@@ -26,4 +26,16 @@ public class GenericArtifactInfo {
             String classifier) {
         this(repository, groupId, artifactId, version, classifier, null);
     }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(groupId).append(':').append(artifactId).append(':').append(version);
+        if (classifier != null && classifier.length() > 0) {
+            b.append(':').append(classifier);
+        }
+        if (packaging != null) {
+            b.append(':').append(packaging);
+        }
+        return b.toString();
+    }
 }
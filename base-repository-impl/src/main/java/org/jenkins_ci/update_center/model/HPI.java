@@ -23,7 +23,6 @@
  */
 package org.jenkins_ci.update_center.model;
 
-import hudson.util.VersionNumber;
 import net.sf.json.JSONObject;
 
 import java.io.IOException;
@@ -41,12 +40,16 @@ import java.util.regex.Pattern;
  * @author Kohsuke Kawaguchi
  */
 public class HPI extends MavenArtifact {
-    private final Pattern developersPattern = Pattern.compile("([^:]*):([^:]*):([^,]*),?");
+    private static final Pattern DEVELOPERS_PATTERN = Pattern.compile("([^:]*):([^:]*):([^,]*),?");
 
     public HPI(GenericArtifactInfo artifact) {
         super(artifact);
     }
 
+    HPI(GenericArtifactInfo artifact, VersionKey versionKey) {
+        super(artifact, versionKey);
+    }
+
     /**
      * Download a plugin via more intuitive URL. This also helps us track download counts.
      */
@@ -78,8 +81,7 @@ public class HPI extends MavenArtifact {
         v = getManifestAttributes().getValue("Hudson-Version");
         if (fixNull(v) != null) {
             try {
-                VersionNumber n = new VersionNumber(v);
-                if (n.compareTo(CUT_OFF) <= 0) {
+                if (VersionKey.of(v).compareTo(CUT_OFF_KEY) <= 0) {
                     return v;   // Hudson <= 1.395 is treated as Jenkins
                 }
                 // TODO: Jenkins-Version started appearing from Jenkins 1.401 POM.
@@ -135,7 +137,7 @@ public class HPI extends MavenArtifact {
         }
 
         List<Developer> r = new ArrayList<Developer>();
-        Matcher m = developersPattern.matcher(devs);
+        Matcher m = DEVELOPERS_PATTERN.matcher(devs);
         int totalMatched = 0;
         while (m.find()) {
             r.add(new Developer(m.group(1).trim(), m.group(2).trim(), m.group(3).trim()));
@@ -221,7 +223,11 @@ public class HPI extends MavenArtifact {
      * Does this artifact come from the jenkins community?
      */
     public boolean isAuthenticJenkinsArtifact() {
+        return isAuthenticJenkinsGroupId(artifact.groupId);
+    }
+
+    static boolean isAuthenticJenkinsGroupId(String groupId) {
         // mayebe it should be startWith("org.jenkins")?
-        return artifact.groupId.contains("jenkins");
+        return groupId.contains("jenkins");
     }
 }
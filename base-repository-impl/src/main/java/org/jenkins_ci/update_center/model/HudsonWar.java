@@ -23,7 +23,6 @@
  */
 package org.jenkins_ci.update_center.model;
 
-import hudson.util.VersionNumber;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -43,7 +42,7 @@ public class HudsonWar extends MavenArtifact {
 
     public String getFileName() {
         String fileName;
-        if (new VersionNumber(version).compareTo(CUT_OFF) <= 0) {
+        if (getVersionKey().compareTo(CUT_OFF_KEY) <= 0) {
             fileName = "hudson.war";
         } else {
             fileName = "jenkins.war";
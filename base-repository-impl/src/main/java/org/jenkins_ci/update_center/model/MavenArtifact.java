@@ -25,16 +25,13 @@ package org.jenkins_ci.update_center.model;
 
 import hudson.util.VersionNumber;
 import net.sf.json.JSONObject;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.metrics.Tracer;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -56,6 +53,11 @@ public class MavenArtifact {
      */
     public static final VersionNumber CUT_OFF = new VersionNumber("1.395");
 
+    /**
+     * {@link #CUT_OFF} as a {@link VersionKey}.
+     */
+    public static final VersionKey CUT_OFF_KEY = VersionKey.of(CUT_OFF.toString());
+
     public final GenericArtifactInfo artifact;
     public final String version;
     public File file;
@@ -63,6 +65,7 @@ public class MavenArtifact {
     // lazily computed
     private long timestamp;
     private Manifest manifest;
+    private VersionKey versionKey;
 
     public MavenArtifact(GenericArtifactInfo artifact) {
         this.artifact = artifact;
@@ -70,24 +73,31 @@ public class MavenArtifact {
     }
 
     /**
-     * Computes the SHA1 signature of the file.
+     * @param versionKey The already parsed version of the artifact.
+     */
+    MavenArtifact(GenericArtifactInfo artifact, VersionKey versionKey) {
+        this(artifact);
+        this.versionKey = versionKey;
+    }
+
+    /**
+     * Computes the SHA1 signature of the file, in Base64.
      */
     public String getDigest() throws IOException {
-        FileInputStream fin = null;
-        try {
-            MessageDigest sig = MessageDigest.getInstance("SHA1");
-            fin = new FileInputStream(file);
-            byte[] buf = new byte[2048];
-            int len;
-            while ((len = fin.read(buf, 0, buf.length)) >= 0) {
-                sig.update(buf, 0, len);
-            }
+        return getChecksums().getSha1Base64();
+    }
 
-            return new String(Base64.encodeBase64(sig.digest()));
-        } catch (NoSuchAlgorithmException e) {
-            throw new IOException(e);
+    /**
+     * The checksums of the file, usually recorded when it was downloaded.
+     */
+    public Checksums getChecksums() throws IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("getDigest", artifact);
+        try {
+            return Checksums.of(file);
         } finally {
-            IOUtils.closeQuietly(fin);
+            span.end();
+            Metrics.phase("digest", start);
         }
     }
 
@@ -104,7 +114,17 @@ public class MavenArtifact {
     }
 
     public VersionNumber getVersion() {
-        return new VersionNumber(version);
+        return getVersionKey().getVersionNumber();
+    }
+
+    /**
+     * The version, parsed once.
+     */
+    public VersionKey getVersionKey() {
+        if (versionKey == null) {
+            versionKey = VersionKey.of(version);
+        }
+        return versionKey;
     }
 
     public String getTimestampAsString() throws IOException {
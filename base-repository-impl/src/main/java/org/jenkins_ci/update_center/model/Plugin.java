@@ -165,22 +165,9 @@ public class Plugin {
             return null;
         }
 
-        Matcher m = EXCERPT_PATTERN.matcher(content);
-        if (!m.find()) {
-            return null;
-        }
-
-        String excerpt = m.group(1);
-        String oneLiner = NEWLINE_PATTERN.matcher(excerpt).replaceAll(" ");
-        return HYPERLINK_PATTERN.matcher(oneLiner).replaceAll("<a href='$2'>$1</a>");
+        return WikiExcerpt.toHtml(content);
     }
 
-    // Tweaking to ignore leading whitespace after the initial {excerpt}
-    private static final Pattern EXCERPT_PATTERN =
-            Pattern.compile("\\{excerpt(?::hidden(?:=true)?)?\\}\\s*(.+)\\{excerpt\\}", Pattern.DOTALL);
-    private static final Pattern HYPERLINK_PATTERN = Pattern.compile("\\[([^|\\]]+)\\|([^|\\]]+)(|([^]])+)?\\]");
-    private static final Pattern NEWLINE_PATTERN = Pattern.compile("(?:\\r\\n|\\n)");
-
     public String getTitle() {
         String title = page != null ? page.getTitle() : null;
         if ((title == null) && pom != null) {
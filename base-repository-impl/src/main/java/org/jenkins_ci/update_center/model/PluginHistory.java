@@ -23,18 +23,24 @@
  */
 package org.jenkins_ci.update_center.model;
 
-import hudson.util.VersionNumber;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
  * Information about Hudson plugin and its release history, discovered from Maven repository.
+ * <p/>
+ * The release history is kept as rows of an {@link ArtifactCatalog}, which can be shared by all the plugins of a
+ * repository. {@link HPI}s are created when asked for, with the versions the catalog parsed when they were added.
  */
 public final class PluginHistory {
     /**
@@ -42,19 +48,76 @@ public final class PluginHistory {
      */
     public final String artifactId;
 
+    public final Set<String> groupId = new TreeSet<String>();
+
+    private final ArtifactCatalog catalog;
+
     /**
-     * All discovered versions, by the version numbers, newer versions first.
+     * Rows of the discovered versions in {@link #catalog}, newer versions first.
      */
-    public final TreeMap<VersionNumber, HPI> artifacts = new TreeMap<VersionNumber, HPI>(VersionNumber.DESCENDING);
+    private int[] rows = new int[0];
 
-    public final Set<String> groupId = new TreeSet<String>();
+    /**
+     * Artifacts of {@link HPI} subtypes, by row, kept as they are since the catalog only has their coordinates.
+     */
+    private Map<Integer, HPI> subtypes;
 
     public PluginHistory(String shortName) {
+        this(shortName, new ArtifactCatalog());
+    }
+
+    public PluginHistory(String shortName, ArtifactCatalog catalog) {
         this.artifactId = shortName;
+        this.catalog = catalog;
+    }
+
+    /**
+     * All discovered versions, by the version numbers, newer versions first.
+     * <p/>
+     * The map and its {@link HPI}s are created on each call, so changing them does not change this history.
+     */
+    public TreeMap<VersionKey, HPI> getArtifacts() {
+        TreeMap<VersionKey, HPI> r = new TreeMap<VersionKey, HPI>(VersionKey.DESCENDING);
+        for (HPI hpi : getVersions()) {
+            r.put(hpi.getVersionKey(), hpi);
+        }
+        return r;
+    }
+
+    /**
+     * The values of {@link #getArtifacts()}, in the same order, for when the map isn't needed.
+     */
+    public List<HPI> getVersions() {
+        List<HPI> r = new ArrayList<HPI>(rows.length);
+        for (int row : rows) {
+            r.add(hpi(row));
+        }
+        return r;
+    }
+
+    /**
+     * Number of discovered versions.
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    public boolean isEmpty() {
+        return rows.length == 0;
     }
 
     public HPI latest() {
-        return artifacts.get(artifacts.firstKey());
+        return hpi(rows[0]);
+    }
+
+    private HPI hpi(int row) {
+        if (subtypes != null) {
+            HPI hpi = subtypes.get(row);
+            if (hpi != null) {
+                return hpi;
+            }
+        }
+        return new HPI(catalog.get(row), catalog.getVersionKey(row));
     }
 
     /**
@@ -62,49 +125,211 @@ public final class PluginHistory {
      * <p/>
      * <p/>
      * If a plugin is renamed to jenkins-ci.org, we want to stop picking up newer changes elsewhere.
+     * <p/>
+     * The version is looked up by binary search, but the rows are copied to make room for a new one, so adding the
+     * versions of a plugin one by one is still quadratic. {@link #addArtifacts(Collection)} isn't.
      */
     public void addArtifact(HPI hpi) {
-        VersionNumber v;
+        VersionKey v;
         try {
-            v = new VersionNumber(hpi.version);
+            v = hpi.getVersionKey();
         } catch (NumberFormatException e) {
             System.out.println("Failed to parse version number " + hpi.version + " for " + hpi);
             return;
         }
+        boolean authentic = hpi.isAuthenticJenkinsArtifact();
+        int i = search(v);
+        if (i >= 0) {
+            if (!authentic && isAuthentic(rows[i])) {
+                return; // authentic artifacts take priority
+            }
+            if (subtypes != null) {
+                subtypes.remove(rows[i]);
+            }
+            rows[i] = add(hpi, v);
+        } else {
+            i = -i - 1;
+            if (!authentic && i < rows.length && isAuthentic(rows[i])) {
+                return; // newer than an authentic version
+            }
+            int[] r = new int[rows.length + 1];
+            System.arraycopy(rows, 0, r, 0, i);
+            r[i] = add(hpi, v);
+            System.arraycopy(rows, i, r, i + 1, rows.length - i);
+            rows = r;
+        }
+        if (authentic) {
+            // versions newer than the oldest authentic one are all authentic, so only those between it and this one
+            // can be dropped
+            int newest = i;
+            while (newest > 0 && !isAuthentic(rows[newest - 1])) {
+                newest--;
+                if (subtypes != null) {
+                    subtypes.remove(rows[newest]);
+                }
+            }
+            if (newest < i) {
+                int[] r = new int[rows.length - (i - newest)];
+                System.arraycopy(rows, 0, r, 0, newest);
+                System.arraycopy(rows, i, r, newest, rows.length - i);
+                rows = r;
+            }
+        }
+    }
+
+    /**
+     * Finds the index of a version in {@link #rows}, or {@code -(insertion point) - 1} like
+     * {@link java.util.Arrays#binarySearch(int[], int)}.
+     */
+    private int search(VersionKey v) {
+        int low = 0;
+        int high = rows.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = catalog.getVersionKey(rows[mid]).compareTo(v);
+            if (c > 0) {
+                low = mid + 1; // newer, so further up
+            } else if (c < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private boolean isAuthentic(int row) {
+        if (subtypes != null) {
+            HPI hpi = subtypes.get(row);
+            if (hpi != null) {
+                return hpi.isAuthenticJenkinsArtifact();
+            }
+        }
+        return HPI.isAuthenticJenkinsGroupId(catalog.getGroupId(row));
+    }
 
-        HPI existing = artifacts.get(v);
-        if (existing == null || PRIORITY.compare(existing, hpi) <= 0) {
-            artifacts.put(v, hpi);
+    /**
+     * Adds an artifact to the catalog and returns its row.
+     */
+    private int add(HPI hpi, VersionKey v) {
+        int row = catalog.add(hpi.artifact, v);
+        if (hpi.getClass() != HPI.class) {
+            if (subtypes == null) {
+                subtypes = new HashMap<Integer, HPI>();
+            }
+            subtypes.put(row, hpi);
         }
+        return row;
+    }
 
+    /**
+     * Adds many artifacts at once, with the same outcome as calling {@link #addArtifact(HPI)} on each of them in order.
+     * <p/>
+     * This sorts everything once and builds the history in a single pass, so adding all the versions of a plugin in
+     * one call is much cheaper than adding them one by one.
+     */
+    public void addArtifacts(Collection<HPI> hpis) {
+        List<Candidate> all = new ArrayList<Candidate>(rows.length + hpis.size());
+        for (int row : rows) {
+            HPI hpi = hpi(row);
+            all.add(new Candidate(hpi.getVersionKey(), hpi, row));
+        }
+        for (HPI hpi : hpis) {
+            try {
+                all.add(new Candidate(hpi.getVersionKey(), hpi, -1));
+            } catch (NumberFormatException e) {
+                System.out.println("Failed to parse version number " + hpi.version + " for " + hpi);
+            }
+        }
+        // the sort is stable, so artifacts of the same version stay in the order they were added
+        Collections.sort(all, OLDEST_FIRST);
 
-        // if we have any authentic Jenkins artifact, we don't want to pick up non-authentic versions that are newer than that
-        // drop entries so that this constraint is satisfied
-        Map.Entry<VersionNumber, HPI> tippingPoint = findYoungestJenkinsArtifact();
-        if (tippingPoint != null) {
-            Iterator<Map.Entry<VersionNumber, HPI>> itr =
-                    artifacts.headMap(tippingPoint.getKey()).entrySet().iterator();
-            while (itr.hasNext()) {
-                Entry<VersionNumber, HPI> e = itr.next();
-                if (!e.getValue().isAuthenticJenkinsArtifact()) {
-                    itr.remove();
+        List<Candidate> kept = new ArrayList<Candidate>();
+        boolean authentic = false;
+        for (int i = 0; i < all.size(); ) {
+            Candidate c = null;
+            for (VersionKey v = all.get(i).version; i < all.size() && all.get(i).version.compareTo(v) == 0; i++) {
+                if (c == null || PRIORITY.compare(c.hpi, all.get(i).hpi) <= 0) {
+                    c = all.get(i);
                 }
             }
+
+            // if we have any authentic Jenkins artifact, we don't want to pick up non-authentic versions that are
+            // newer than that
+            if (c.hpi.isAuthenticJenkinsArtifact()) {
+                authentic = true;
+            } else if (authentic) {
+                continue;
+            }
+            kept.add(c);
+        }
+
+        int[] r = new int[kept.size()];
+        for (int i = 0; i < r.length; i++) {
+            Candidate c = kept.get(kept.size() - 1 - i);
+            if (c.row < 0) {
+                c.row = add(c.hpi, c.version);
+            }
+            r[i] = c.row;
+        }
+        rows = r;
+    }
+
+    /**
+     * Forgets the given versions.
+     *
+     * @param versions Best a {@link TreeSet}, as the hash code of a {@link VersionKey} takes a {@link hudson.util.VersionNumber}.
+     */
+    public void removeArtifacts(Set<VersionKey> versions) {
+        List<Integer> kept = new ArrayList<Integer>(rows.length);
+        for (int row : rows) {
+            if (!versions.contains(catalog.getVersionKey(row))) {
+                kept.add(row);
+            } else if (subtypes != null) {
+                subtypes.remove(row);
+            }
+        }
+        int[] r = new int[kept.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = kept.get(i);
         }
+        rows = r;
     }
 
     /**
      * Returns the youngest version of the artifact that's authentic Jenkins artifact.
      */
-    public Map.Entry<VersionNumber, HPI> findYoungestJenkinsArtifact() {
-        for (Map.Entry<VersionNumber, HPI> e : artifacts.descendingMap().entrySet()) {
-            if (e.getValue().isAuthenticJenkinsArtifact()) {
-                return e;
+    public Map.Entry<VersionKey, HPI> findYoungestJenkinsArtifact() {
+        for (int i = rows.length - 1; i >= 0; i--) {
+            HPI hpi = hpi(rows[i]);
+            if (hpi.isAuthenticJenkinsArtifact()) {
+                return new AbstractMap.SimpleImmutableEntry<VersionKey, HPI>(hpi.getVersionKey(), hpi);
             }
         }
         return null;
     }
 
+    private static final class Candidate {
+        final VersionKey version;
+        final HPI hpi;
+        /**
+         * Row in the catalog, or -1 until added to it.
+         */
+        int row;
+
+        Candidate(VersionKey version, HPI hpi, int row) {
+            this.version = version;
+            this.hpi = hpi;
+            this.row = row;
+        }
+    }
+
+    private static final Comparator<Candidate> OLDEST_FIRST = new Comparator<Candidate>() {
+        public int compare(Candidate a, Candidate b) {
+            return a.version.compareTo(b.version);
+        }
+    };
+
     private static final Comparator<HPI> PRIORITY = new Comparator<HPI>() {
         public int compare(HPI a, HPI b) {
             return priority(a) - priority(b);
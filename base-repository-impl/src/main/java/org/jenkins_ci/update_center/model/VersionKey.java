@@ -0,0 +1,139 @@
+package org.jenkins_ci.update_center.model;
+
+import hudson.util.VersionNumber;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A version number parsed once, for use as a map key and in sorts. Orders exactly like {@link VersionNumber}.
+ * <p/>
+ * Purely numeric versions such as "1.424.2", which are the vast majority in the repository, are kept as an
+ * {@code int[]} and compared without allocating anything. Other versions are compared through a {@link VersionNumber}
+ * parsed once and kept with the key.
+ */
+public final class VersionKey implements Comparable<VersionKey> {
+    private final String version;
+    /**
+     * Components of a purely numeric version, without trailing zeros as "1.0" equals "1". Null for other versions.
+     */
+    private final int[] digits;
+    /**
+     * Eagerly parsed for non-numeric versions, lazily for numeric ones.
+     */
+    private volatile VersionNumber number;
+
+    private VersionKey(String version, int[] digits, VersionNumber number) {
+        this.version = version;
+        this.digits = digits;
+        this.number = number;
+    }
+
+    /**
+     * Parses a version. Versions that aren't purely numeric are parsed by {@link VersionNumber} right away, so this
+     * fails the same way {@code new VersionNumber(version)} does.
+     */
+    public static VersionKey of(String version) {
+        int[] digits = parseDigits(version);
+        return new VersionKey(version, digits, digits == null ? new VersionNumber(version) : null);
+    }
+
+    /**
+     * Parses "1.2.3" into {1, 2, 3}, dropping trailing zeros. Returns null unless the version is made of dot-separated,
+     * non-empty runs of at most 9 digits, which is when {@link VersionNumber} treats it as plain integers.
+     */
+    private static int[] parseDigits(String version) {
+        int n = 1;
+        for (int i = 0; i < version.length(); i++) {
+            if (version.charAt(i) == '.') {
+                n++;
+            }
+        }
+        int[] digits = new int[n];
+        int component = 0;
+        int value = 0;
+        int length = 0;
+        for (int i = 0; i <= version.length(); i++) {
+            char c = i < version.length() ? version.charAt(i) : '.';
+            if (c == '.') {
+                if (length == 0) {
+                    return null;
+                }
+                digits[component++] = value;
+                value = 0;
+                length = 0;
+            } else if (c >= '0' && c <= '9' && length < 9) {
+                value = value * 10 + (c - '0');
+                length++;
+            } else {
+                return null;
+            }
+        }
+        while (n > 0 && digits[n - 1] == 0) {
+            n--;
+        }
+        return n == digits.length ? digits : Arrays.copyOf(digits, n);
+    }
+
+    /**
+     * A key for a version already known to be purely numeric, from its components as {@link #digits()} gave them.
+     */
+    static VersionKey numeric(String version, int[] digits) {
+        return new VersionKey(version, digits, null);
+    }
+
+    /**
+     * Components of a purely numeric version, or null. Not to be modified.
+     */
+    int[] digits() {
+        return digits;
+    }
+
+    public VersionNumber getVersionNumber() {
+        VersionNumber n = number;
+        if (n == null) {
+            number = n = new VersionNumber(version);
+        }
+        return n;
+    }
+
+    public int compareTo(VersionKey that) {
+        if (this.digits == null || that.digits == null) {
+            return getVersionNumber().compareTo(that.getVersionNumber());
+        }
+        int[] a = this.digits;
+        int[] b = that.digits;
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        // without trailing zeros, the longer one has a non-zero component left
+        return a.length - b.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VersionKey && compareTo((VersionKey) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return getVersionNumber().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+
+    /**
+     * Newer versions first, like {@link VersionNumber#DESCENDING}.
+     */
+    public static final Comparator<VersionKey> DESCENDING = new Comparator<VersionKey>() {
+        public int compare(VersionKey o1, VersionKey o2) {
+            return o2.compareTo(o1);
+        }
+    };
+}
@@ -0,0 +1,136 @@
+package org.jenkins_ci.update_center.repo;
+
+import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.regex.Pattern;
+
+/**
+ * Artifact contents keyed by their SHA-256, each stored once however many paths it is downloaded under, such as the
+ * same release mirrored under several group IDs.
+ * <p/>
+ * A blob is a file named after its SHA-256 that is hard linked from every path with those contents, so the paths of
+ * the {@link LocalRepository} and of the download layout are links to it. It must be on the same file system as them.
+ * Deleting a path never loses the contents of another one, so blobs that nothing else links to anymore can be
+ * {@linkplain #gc() removed} at any time.
+ */
+public class BlobStore {
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final File dir;
+
+    public BlobStore(File dir) {
+        this.dir = dir;
+    }
+
+    private File blob(String sha256) {
+        return new File(dir, sha256.substring(0, 2) + "/" + sha256);
+    }
+
+    /**
+     * Puts the blob with the given SHA-256 at the given path, replacing what is there, if there is such a blob.
+     *
+     * @return false if there is no such blob.
+     */
+    public boolean link(String sha256, File to) throws IOException {
+        File blob = blob(sha256.toLowerCase());
+        boolean found = blob.exists() && link(blob, to);
+        Metrics.cache("blobStore", found);
+        return found;
+    }
+
+    /**
+     * Keeps the contents of the given file as the blob with the given SHA-256, unless there is one already.
+     */
+    public void add(String sha256, File f) throws IOException {
+        File blob = blob(sha256.toLowerCase());
+        blob.getParentFile().mkdirs();
+        // fails if another thread or process has just added it, which is fine
+        if (ln(f, blob) != 0 && !blob.exists()) {
+            throw new IOException("Failed to link " + f + " to " + blob + ", which must be on the same file system");
+        }
+    }
+
+    /**
+     * Hard links a file to another path, replacing it at once.
+     *
+     * @return false if the file is gone.
+     */
+    private static boolean link(File from, File to) throws IOException {
+        to.getParentFile().mkdirs();
+        File tmp = File.createTempFile(to.getName(), ".link", to.getParentFile());
+        try {
+            tmp.delete();
+            if (ln(from, tmp) != 0) {
+                if (!from.exists()) {
+                    return false; // garbage collected in the meantime
+                }
+                throw new IOException(
+                        "Failed to link " + from + " to " + tmp + ", which must be on the same file system");
+            }
+            if (!tmp.renameTo(to)) {
+                throw new IOException("Failed to rename " + tmp + " to " + to);
+            }
+            return true;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static int ln(File from, File to) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command("ln", from.getAbsolutePath(), to.getAbsolutePath());
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        IOUtils.closeQuietly(p.getOutputStream());
+        IOUtils.toString(p.getInputStream());
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while linking " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Removes the blobs that no path links to anymore.
+     *
+     * @return The number of blobs removed.
+     */
+    public int gc() throws IOException {
+        if (!dir.isDirectory()) {
+            return 0;
+        }
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command("find", dir.getAbsolutePath(), "-type", "f", "-links", "1");
+        Process p = pb.start();
+        IOUtils.closeQuietly(p.getOutputStream());
+        int removed = 0;
+        BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()));
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                File blob = new File(line);
+                if (SHA256.matcher(blob.getName()).matches() && blob.delete()) {
+                    removed++;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(r);
+        }
+        try {
+            if (p.waitFor() != 0) {
+                throw new IOException("find failed in " + dir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while collecting " + dir);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkins_ci.update_center.repo;
+
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.metrics.Tracer;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HudsonWar;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Delegating {@link MavenRepository} that records the time spent discovering and resolving artifacts as the
+ * "discovery" and "resolve" phases of {@link Metrics}, and each call as a {@link Tracer} span.
+ */
+public class InstrumentedMavenRepository extends MavenRepository {
+    private final MavenRepository base;
+
+    public InstrumentedMavenRepository(MavenRepository base) {
+        this.base = base;
+    }
+
+    @Override
+    public Collection<PluginHistory> listHudsonPlugins() throws IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("listHudsonPlugins", null);
+        try {
+            return base.listHudsonPlugins();
+        } finally {
+            span.end();
+            Metrics.phase("discovery", start);
+        }
+    }
+
+    @Override
+    public TreeMap<VersionKey, HudsonWar> getHudsonWar() throws IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("getHudsonWar", null);
+        try {
+            return base.getHudsonWar();
+        } finally {
+            span.end();
+            Metrics.phase("discovery", start);
+        }
+    }
+
+    @Override
+    public File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("pom".equals(type) ? "resolvePOM" : "resolve", a);
+        try {
+            return base.resolve(a, type, classifier);
+        } finally {
+            span.end();
+            Metrics.phase("resolve", start);
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return base.isThreadSafe();
+    }
+
+    @Override
+    protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) throws IOException {
+        base.listWar(r, groupId, cap);
+    }
+
+    @Override
+    protected void listHudsonPlugins(Map<String, PluginHistory> plugins) throws IOException {
+        base.listHudsonPlugins(plugins);
+    }
+}
@@ -0,0 +1,218 @@
+package org.jenkins_ci.update_center.repo;
+
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.model.Checksums;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A directory of downloaded artifacts in the Maven repository layout, such as {@code ~/.m2/repository}, which several
+ * generator processes can share.
+ * <p/>
+ * An artifact is only ever there complete: it is downloaded next to its path and renamed into place once its checksums
+ * have been verified and kept next to it (see {@link Checksums}), and a file without up to date checksums is not
+ * trusted. The artifacts of a directory are downloaded by one thread or process at a time, holding a lock on the
+ * {@value #LOCK_FILE} file of the directory, so that the others find them there once it is done.
+ * <p/>
+ * With a {@link BlobStore}, downloaded artifacts are links to its blobs, so contents downloaded under several paths are
+ * only stored once.
+ */
+public class LocalRepository {
+    /**
+     * Kept in each directory rather than next to each artifact, so there is one per directory and not one more per
+     * artifact. It isn't removed, as processes that already opened it could then lock it while others lock a new one.
+     */
+    public static final String LOCK_FILE = ".update-center.lock";
+
+    private static final long LOCK_POLL_MILLIS = 20;
+
+    /**
+     * File locks are held by the whole process, so threads first take one of these, by lock file, which are forgotten
+     * once no thread uses them. Not monitors, which would pin virtual threads for the whole download.
+     */
+    private static final Map<File, DirectoryLock> LOCKS = new HashMap<File, DirectoryLock>();
+
+    private static final class DirectoryLock {
+        final ReentrantLock lock = new ReentrantLock();
+        int users;
+    }
+
+    private final File dir;
+    private BlobStore blobs;
+
+    public LocalRepository(File dir) {
+        this.dir = dir;
+    }
+
+    public void setBlobStore(BlobStore blobs) {
+        this.blobs = blobs;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Downloads artifacts into the local repository.
+     */
+    public interface Downloader {
+        /**
+         * Downloads the artifact at the given path into the file, verifying it against the checksums announced by the
+         * server.
+         *
+         * @return The checksums of what was downloaded, or null if there is no such artifact.
+         */
+        Checksums download(String path, File to) throws IOException;
+
+        /**
+         * Returns the checksums the server has for the artifact at the given path, or null if it can't tell.
+         */
+        Checksums checksums(String path) throws IOException;
+    }
+
+    /**
+     * Returns the file of the artifact at the given path, downloading it if it isn't there complete yet.
+     *
+     * @return The file, or null if there is no such artifact.
+     */
+    public File resolve(String path, Downloader downloader) throws IOException {
+        File f = new File(dir, path);
+        boolean complete = Checksums.read(f) != null;
+        Metrics.cache("localRepository", complete);
+        if (complete) {
+            return f;
+        }
+        f.getParentFile().mkdirs();
+        File lockPath = new File(f.getParentFile().getAbsoluteFile(), LOCK_FILE);
+        DirectoryLock threads = lockThreads(lockPath);
+        try {
+            RandomAccessFile lockFile = new RandomAccessFile(lockPath, "rw");
+            try {
+                FileLock lock = lock(lockFile.getChannel());
+                try {
+                    if (Checksums.read(f) != null) {
+                        return f; // downloaded by another process in the meantime
+                    }
+                    if (f.exists() && isIntact(f, path, downloader)) {
+                        if (blobs != null) {
+                            blobs.add(Checksums.read(f).sha256, f);
+                        }
+                        return f;
+                    }
+                    return download(f, path, downloader);
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        } finally {
+            unlockThreads(lockPath, threads);
+        }
+    }
+
+    private static DirectoryLock lockThreads(File lockPath) throws IOException {
+        DirectoryLock l;
+        synchronized (LOCKS) {
+            l = LOCKS.get(lockPath);
+            if (l == null) {
+                LOCKS.put(lockPath, l = new DirectoryLock());
+            }
+            l.users++;
+        }
+        try {
+            l.lock.lockInterruptibly();
+            return l;
+        } catch (InterruptedException e) {
+            forget(lockPath, l);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a lock");
+        }
+    }
+
+    private static void unlockThreads(File lockPath, DirectoryLock l) {
+        l.lock.unlock();
+        forget(lockPath, l);
+    }
+
+    private static void forget(File lockPath, DirectoryLock l) {
+        synchronized (LOCKS) {
+            if (--l.users == 0) {
+                LOCKS.remove(lockPath);
+            }
+        }
+    }
+
+    /**
+     * Polls rather than blocks, as the kernel takes the threads of two processes waiting for each other's locks on
+     * different files for a deadlock, since it only sees the processes.
+     */
+    private static FileLock lock(FileChannel channel) throws IOException {
+        long start = System.nanoTime();
+        FileLock lock;
+        while ((lock = channel.tryLock()) == null) {
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a lock");
+            }
+        }
+        Metrics.phase("localRepositoryLock", start);
+        return lock;
+    }
+
+    /**
+     * Checks a file left by an earlier version or an interrupted download against the checksums of the server, and
+     * keeps its checksums if it is intact.
+     */
+    private static boolean isIntact(File f, String path, Downloader downloader) throws IOException {
+        Checksums expected = downloader.checksums(path);
+        if (expected != null && (expected.sha1 != null || expected.sha256 != null)) {
+            Checksums actual = Checksums.hash(f);
+            try {
+                actual.verify(expected.sha1, expected.sha256, path);
+                actual.writeFor(f);
+                return true;
+            } catch (IOException e) {
+                System.out.println("** Downloading again: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private File download(File f, String path, Downloader downloader) throws IOException {
+        File tmp = File.createTempFile(f.getName(), ".tmp", f.getParentFile());
+        try {
+            Checksums checksums = downloader.download(path, tmp);
+            if (checksums == null) {
+                return null;
+            }
+            // a file that isn't intact goes first, as it would look complete with the new checksums, which go before
+            // the new file so that they are never older than it
+            if (f.exists() && !f.delete()) {
+                throw new IOException("Failed to delete " + f);
+            }
+            checksums.writeFor(f);
+            if (blobs == null || !blobs.link(checksums.sha256, f)) {
+                if (!tmp.renameTo(f)) {
+                    throw new IOException("Failed to rename " + tmp + " to " + f);
+                }
+                if (blobs != null) {
+                    blobs.add(checksums.sha256, f);
+                }
+            }
+            return f;
+        } finally {
+            tmp.delete();
+        }
+    }
+}
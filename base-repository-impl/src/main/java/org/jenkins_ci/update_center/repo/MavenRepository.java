@@ -1,17 +1,19 @@
 package org.jenkins_ci.update_center.repo;
 
-import hudson.util.VersionNumber;
+import org.jenkins_ci.update_center.model.ArtifactCatalog;
 import org.jenkins_ci.update_center.model.GenericArtifactInfo;
 import org.jenkins_ci.update_center.model.HPI;
 import org.jenkins_ci.update_center.model.HudsonWar;
 import org.jenkins_ci.update_center.model.MavenArtifact;
 import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -48,7 +50,7 @@ public abstract class MavenRepository {
         Map<Date, Map<String, HPI>> plugins = new TreeMap<Date, Map<String, HPI>>();
 
         for (PluginHistory p : all) {
-            for (HPI h : p.artifacts.values()) {
+            for (HPI h : p.getVersions()) {
                 h.file = resolve(h.artifact);
                 try {
                     Date releaseDate = h.getTimestampAsDate();
@@ -69,6 +71,35 @@ public abstract class MavenRepository {
         return plugins;
     }
 
+    /**
+     * Like {@link #listHudsonPluginsByReleaseDate()}, but only keeps the coordinates of the artifacts, so that the
+     * {@link HPI}s and their manifests don't all stay in memory.
+     */
+    public Map<Date, Map<String, GenericArtifactInfo>> listPluginArtifactsByReleaseDate() throws IOException {
+        Map<Date, Map<String, GenericArtifactInfo>> plugins = new TreeMap<Date, Map<String, GenericArtifactInfo>>();
+
+        for (PluginHistory p : listHudsonPlugins()) {
+            for (HPI h : p.getVersions()) {
+                h.file = resolve(h.artifact);
+                try {
+                    Date releaseDate = h.getTimestampAsDate();
+                    System.out.println("adding " + h.artifact.artifactId + ":" + h.version);
+                    Map<String, GenericArtifactInfo> pluginsOnDate = plugins.get(releaseDate);
+                    if (pluginsOnDate == null) {
+                        pluginsOnDate = new TreeMap<String, GenericArtifactInfo>();
+                        plugins.put(releaseDate, pluginsOnDate);
+                    }
+                    pluginsOnDate.put(p.artifactId, h.artifact);
+                } catch (IOException e) {
+                    // if we fail to resolve artifact, move on
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return plugins;
+    }
+
     /**
      * find the HPI for the specified plugin
      *
@@ -78,7 +109,7 @@ public abstract class MavenRepository {
         Collection<PluginHistory> all = listHudsonPlugins();
 
         for (PluginHistory p : all) {
-            for (HPI h : p.artifacts.values()) {
+            for (HPI h : p.getVersions()) {
                 if (h.isEqualsTo(groupId, artifactId, version)) {
                     return h;
                 }
@@ -88,10 +119,10 @@ public abstract class MavenRepository {
     }
 
 
-    public TreeMap<VersionNumber, HudsonWar> getHudsonWar() throws IOException {
-        TreeMap<VersionNumber, HudsonWar> r = new TreeMap<VersionNumber, HudsonWar>(VersionNumber.DESCENDING);
+    public TreeMap<VersionKey, HudsonWar> getHudsonWar() throws IOException {
+        TreeMap<VersionKey, HudsonWar> r = new TreeMap<VersionKey, HudsonWar>(VersionKey.DESCENDING);
         listWar(r, "org.jenkins-ci.main", null);
-        listWar(r, "org.jvnet.hudson.main", MavenArtifact.CUT_OFF);
+        listWar(r, "org.jvnet.hudson.main", MavenArtifact.CUT_OFF_KEY);
         return r;
     }
 
@@ -101,6 +132,14 @@ public abstract class MavenRepository {
 
     public abstract File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException;
 
+    /**
+     * Whether artifacts can be resolved from several threads at once. Otherwise the generator resolves them one at a
+     * time.
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     public void setMaxPlugins(Integer maxPlugins) {
         this.maxPlugins = maxPlugins;
     }
@@ -114,12 +153,38 @@ public abstract class MavenRepository {
         this.password = password;
     }
 
-    protected abstract void listWar(TreeMap<VersionNumber, HudsonWar> r, String groupId, VersionNumber cap)
+    protected abstract void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap)
             throws IOException;
 
     protected abstract void listHudsonPlugins(Map<String, PluginHistory> plugins) throws IOException;
 
-    protected boolean isWarValid(HudsonWar warInfo, VersionNumber cap) {
+    /**
+     * Adds discovered plugin artifacts to the histories of their plugins, creating the histories as needed. New
+     * histories share one {@link ArtifactCatalog}.
+     */
+    protected void addHudsonPlugins(Map<String, PluginHistory> plugins, Collection<HPI> hpis) {
+        ArtifactCatalog catalog = new ArtifactCatalog();
+        Map<String, List<HPI>> byPlugin = new HashMap<String, List<HPI>>();
+        for (HPI hpi : hpis) {
+            List<HPI> l = byPlugin.get(hpi.artifact.artifactId);
+            if (l == null) {
+                byPlugin.put(hpi.artifact.artifactId, l = new ArrayList<HPI>());
+            }
+            l.add(hpi);
+        }
+        for (Map.Entry<String, List<HPI>> e : byPlugin.entrySet()) {
+            PluginHistory p = plugins.get(e.getKey());
+            if (p == null) {
+                plugins.put(e.getKey(), p = new PluginHistory(e.getKey(), catalog));
+            }
+            p.addArtifacts(e.getValue());
+            for (HPI hpi : e.getValue()) {
+                p.groupId.add(hpi.artifact.groupId);
+            }
+        }
+    }
+
+    protected boolean isWarValid(HudsonWar warInfo, VersionKey cap) {
         if (warInfo.version.contains("SNAPSHOT")) {
             return false;
         }
@@ -130,7 +195,7 @@ public abstract class MavenRepository {
         if (warInfo.artifact.classifier != null) {
             return false;
         }
-        if (cap != null && new VersionNumber(warInfo.version).compareTo(cap) > 0) {
+        if (cap != null && warInfo.getVersionKey().compareTo(cap) > 0) {
             return false;
         }
         return true;
@@ -0,0 +1,153 @@
+package org.jenkins_ci.update_center.repo;
+
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.HudsonWar;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delegating {@link MavenRepository} that can be told which artifacts will be resolved soon, and resolves them in the
+ * background so that they are usually local by the time they are asked for.
+ * <p/>
+ * Prefetches wait in a bounded queue, and are dropped when it is full rather than holding up the caller. A resolve
+ * that finds its prefetch still waiting runs it right away instead. Lookups are counted as the "prefetch" cache of
+ * {@link Metrics#CACHE_REQUESTS}, and prefetches as {@link Metrics#PREFETCHES}.
+ */
+public class PrefetchingMavenRepository extends MavenRepository {
+    private final MavenRepository base;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, FutureTask<File>> prefetched;
+
+    /**
+     * @param threads Threads resolving in the background.
+     * @param queue   How many prefetches can wait for a thread.
+     */
+    public PrefetchingMavenRepository(MavenRepository base, final int threads, final int queue) {
+        this.base = base;
+        this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queue), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "prefetch");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        // keeps the ones most recently used, as an artifact is often resolved more than once, beyond those running
+        // or waiting, which are never more than threads + queue
+        this.prefetched = new LinkedHashMap<String, FutureTask<File>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FutureTask<File>> eldest) {
+                return size() > threads + queue * 2;
+            }
+        };
+    }
+
+    /**
+     * Prefetches what is resolved when a plugin is built: its releases, latest first, and the POM of the latest.
+     */
+    public void prefetch(PluginHistory plugin) {
+        boolean latest = true;
+        for (HPI h : plugin.getVersions()) {
+            prefetch(h.artifact, h.artifact.packaging, h.artifact.classifier);
+            if (latest) {
+                prefetch(h.artifact, "pom", null);
+                latest = false;
+            }
+        }
+    }
+
+    public void prefetch(final GenericArtifactInfo a, final String type, final String classifier) {
+        String key = key(a, type, classifier);
+        FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+            public File call() throws IOException {
+                return base.resolve(a, type, classifier);
+            }
+        });
+        // only recorded once accepted, so that a dropped prefetch doesn't push a running one out
+        synchronized (prefetched) {
+            if (prefetched.containsKey(key)) {
+                return;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                Metrics.counter(Metrics.PREFETCHES, "result", "dropped").increment();
+                return;
+            }
+            prefetched.put(key, task);
+        }
+        Metrics.counter(Metrics.PREFETCHES, "result", "queued").increment();
+    }
+
+    @Override
+    public File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+        String key = key(a, type, classifier);
+        FutureTask<File> task;
+        synchronized (prefetched) {
+            task = prefetched.get(key);
+        }
+        Metrics.cache("prefetch", task != null);
+        if (task != null) {
+            task.run(); // unless it already ran or is running
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw (IOException) new IOException("Interrupted while resolving " + a).initCause(e);
+            } catch (ExecutionException e) {
+                // not cached, so that this tries again
+                synchronized (prefetched) {
+                    prefetched.remove(key);
+                }
+            }
+        }
+        return base.resolve(a, type, classifier);
+    }
+
+    private static String key(GenericArtifactInfo a, String type, String classifier) {
+        return a.repository + '/' + a.groupId + ':' + a.artifactId + ':' + a.version + ':' + type + ':' + classifier;
+    }
+
+    @Override
+    public Collection<PluginHistory> listHudsonPlugins() throws IOException {
+        return base.listHudsonPlugins();
+    }
+
+    @Override
+    public TreeMap<VersionKey, HudsonWar> getHudsonWar() throws IOException {
+        return base.getHudsonWar();
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return base.isThreadSafe();
+    }
+
+    @Override
+    protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) throws IOException {
+        base.listWar(r, groupId, cap);
+    }
+
+    @Override
+    protected void listHudsonPlugins(Map<String, PluginHistory> plugins) throws IOException {
+        base.listHudsonPlugins(plugins);
+    }
+}
@@ -5,14 +5,16 @@ import org.jenkins_ci.update_center.model.GenericArtifactInfo;
 import org.jenkins_ci.update_center.model.HPI;
 import org.jenkins_ci.update_center.model.HudsonWar;
 import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Delegating {@link MavenRepository} to limit the data to the subset compatible with the specific version.
@@ -25,11 +27,11 @@ public class VersionCappedMavenRepository extends MavenRepository {
     /**
      * Version number to cap. We only report the portion of data that's compatible with this version.
      */
-    private final VersionNumber cap;
+    private final VersionKey cap;
 
     public VersionCappedMavenRepository(MavenRepository base, VersionNumber cap) {
         this.base = base;
-        this.cap = cap;
+        this.cap = VersionKey.of(cap.toString());
     }
 
     @Override
@@ -38,20 +40,21 @@ public class VersionCappedMavenRepository extends MavenRepository {
         for (Iterator<PluginHistory> jtr = r.iterator(); jtr.hasNext(); ) {
             PluginHistory h = jtr.next();
 
-            for (Iterator<Entry<VersionNumber, HPI>> itr = h.artifacts.entrySet().iterator(); itr.hasNext(); ) {
-                Entry<VersionNumber, HPI> e = itr.next();
+            Set<VersionKey> incompatible = new TreeSet<VersionKey>();
+            for (HPI hpi : h.getVersions()) {
                 try {
-                    VersionNumber v = new VersionNumber(e.getValue().getRequiredJenkinsVersion());
+                    VersionKey v = VersionKey.of(hpi.getRequiredJenkinsVersion());
                     if (v.compareTo(cap) <= 0) {
                         continue;
                     }
                 } catch (IOException x) {
                     x.printStackTrace();
                 }
-                itr.remove();
+                incompatible.add(hpi.getVersionKey());
             }
+            h.removeArtifacts(incompatible);
 
-            if (h.artifacts.isEmpty()) {
+            if (h.isEmpty()) {
                 jtr.remove();
             }
         }
@@ -66,7 +69,12 @@ public class VersionCappedMavenRepository extends MavenRepository {
     }
 
     @Override
-    protected void listWar(TreeMap<VersionNumber, HudsonWar> r, String groupId, VersionNumber cap) throws IOException {
+    public boolean isThreadSafe() {
+        return base.isThreadSafe();
+    }
+
+    @Override
+    protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) throws IOException {
         base.listWar(r, groupId, cap);
     }
 
@@ -0,0 +1,26 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, always adding the GC profiler so that every result comes with
+ * its allocations per operation ({@code gc.alloc.rate.norm}).
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                      # everything
+ * java -jar benchmarks/target/benchmarks.jar Sign -p plugins=1000 # a subset
+ * </pre>
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cli)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,60 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.jenkins_ci.update_center.model.ArtifactCatalog;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.PluginHistory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap that the release histories of a repository keep: the given number of versions, spread over
+ * plugins the way {@code MavenRepository.addHudsonPlugins} gets them, with one string per field and artifact as a
+ * repository listing produces them. This is what stays in memory for the whole run, so it isn't a JMH benchmark.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.jenkins_ci.update_center.benchmarks.CatalogFootprint 500000 2000
+ * </pre>
+ */
+public class CatalogFootprint {
+    public static void main(String[] args) throws Exception {
+        int versions = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int plugins = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        long before = usedHeap();
+        List<PluginHistory> histories = build(versions, plugins);
+        long after = usedHeap();
+
+        System.out.printf("%d versions of %d plugins: %d KB retained, %d bytes per version%n",
+                versions, histories.size(), (after - before) >> 10, (after - before) / versions);
+    }
+
+    private static List<PluginHistory> build(int versions, int plugins) {
+        ArtifactCatalog catalog = new ArtifactCatalog();
+        List<PluginHistory> histories = new ArrayList<PluginHistory>(plugins);
+        List<String> all = Fixtures.versions(versions, Fixtures.SEED);
+        int perPlugin = (versions + plugins - 1) / plugins;
+        for (int p = 0; p * perPlugin < versions; p++) {
+            String artifactId = "plugin-" + p;
+            List<HPI> hpis = new ArrayList<HPI>(perPlugin);
+            for (String v : all.subList(p * perPlugin, Math.min(versions, (p + 1) * perPlugin))) {
+                String groupId = hpis.size() % 5 == 0 ? "org.jvnet.hudson.plugins" : "org.jenkins-ci.plugins";
+                hpis.add(new HPI(new GenericArtifactInfo(new String("releases"), new String(groupId),
+                        new String(artifactId), new String(v), null, new String("hpi"))));
+            }
+            PluginHistory h = new PluginHistory(artifactId, catalog);
+            h.addArtifacts(hpis);
+            histories.add(h);
+        }
+        return histories;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
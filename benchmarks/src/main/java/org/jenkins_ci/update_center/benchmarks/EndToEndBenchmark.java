@@ -0,0 +1,148 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.repo.MavenRepository;
+import org.jenkins_ci.update_center.standin.StandInMain;
+import org.jenkins_ci.update_center.standin.SyntheticCatalog;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Runs the whole generator against a fixed synthetic catalog, with no network, and records what each phase cost
+ * into a JSON report that {@link RegressionCheck} can compare against a baseline.
+ * <p/>
+ * The phases are the building of the core entry, of the plugin list, the signature and the release history, plus
+ * the run as a whole. For each one the report has the wall and CPU time, the heap and RSS peaks, the bytes read and
+ * written and the bytes allocated. The stand-in servers run in the same JVM, so their share is included.
+ * <p/>
+ * If the catalog directory doesn't exist, it is generated first with {@link SyntheticCatalog}'s defaults and the
+ * given number of plugins. The local repository is emptied before each run, so that downloads are measured too.
+ */
+public class EndToEndBenchmark extends StandInMain {
+    @Option(name = "-json", required = true, usage = "Where to write the report")
+    public File json;
+
+    @Option(name = "-plugins", usage = "Number of plugins of the catalog, if it needs to be generated")
+    public int plugins = 1000;
+
+    @Option(name = "-keepLocal", usage = "Reuse the artifacts downloaded by the previous run")
+    public boolean keepLocal;
+
+    private final JSONObject phases = new JSONObject();
+
+    @Override
+    public void run() throws Exception {
+        if (!catalog.exists()) {
+            SyntheticCatalog c = new SyntheticCatalog();
+            c.out = catalog;
+            c.plugins = plugins;
+            c.generate();
+        }
+        File local = localRepository != null ? localRepository : new File(catalog, "local");
+        if (!keepLocal) {
+            FileUtils.deleteDirectory(local);
+        }
+
+        ResourceUsage start = begin();
+        super.run();
+        end("total", start);
+
+        JSONObject report = new JSONObject();
+        report.put("catalog", catalog.getAbsolutePath());
+        report.put("java", System.getProperty("java.version"));
+        report.put("phases", phases);
+        PrintWriter w = new PrintWriter(json, "UTF-8");
+        try {
+            w.println(report.toString(2));
+        } finally {
+            w.close();
+        }
+        System.out.println("Report written to " + json);
+    }
+
+    @Override
+    protected JSONObject buildCore(MavenRepository repository, PrintWriter redirect) throws Exception {
+        ResourceUsage start = begin();
+        try {
+            return super.buildCore(repository, redirect);
+        } finally {
+            end("core", start);
+        }
+    }
+
+    @Override
+    protected JSONObject buildPlugins(MavenRepository repository, PrintWriter redirect) throws Exception {
+        ResourceUsage start = begin();
+        try {
+            return super.buildPlugins(repository, redirect);
+        } finally {
+            end("plugins", start);
+        }
+    }
+
+    @Override
+    protected void sign(JSONObject o) throws GeneralSecurityException, IOException {
+        ResourceUsage start = begin();
+        try {
+            super.sign(o);
+        } finally {
+            end("sign", start);
+        }
+    }
+
+    @Override
+    protected JSONObject buildFullReleaseHistory(MavenRepository repo) throws Exception {
+        ResourceUsage start = begin();
+        try {
+            return super.buildFullReleaseHistory(repo);
+        } finally {
+            end("releaseHistory", start);
+        }
+    }
+
+    /**
+     * What {@link #buildFullReleaseHistory} is with {@code -spill}, so recorded as the same phase.
+     */
+    @Override
+    protected void writeReleaseHistory(MavenRepository repository, Writer w) throws Exception {
+        ResourceUsage start = begin();
+        try {
+            super.writeReleaseHistory(repository, w);
+        } finally {
+            end("releaseHistory", start);
+        }
+    }
+
+    private ResourceUsage begin() throws IOException {
+        ResourceUsage.resetPeaks();
+        return ResourceUsage.now();
+    }
+
+    /**
+     * Records a phase. As the peaks are reset when a phase begins, the peaks of "total" are the largest of its
+     * phases' and its own since the last phase ended.
+     */
+    private void end(String phase, ResourceUsage start) throws IOException {
+        JSONObject usage = ResourceUsage.now().since(start);
+        if (phase.equals("total")) {
+            for (Object o : phases.values()) {
+                JSONObject p = (JSONObject) o;
+                for (String peak : new String[]{"heapPeakBytes", "rssPeakBytes"}) {
+                    usage.put(peak, Math.max(usage.getLong(peak), p.getLong(peak)));
+                }
+            }
+        }
+        phases.put(phase, usage);
+        System.out.println("Phase " + phase + ": " + usage);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new EndToEndBenchmark().run(args));
+    }
+}
@@ -0,0 +1,112 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import com.sun.xml.bind.v2.util.EditDistance;
+import hudson.plugins.jira.soap.RemotePage;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.ConfluencePluginList;
+import org.jenkins_ci.update_center.standin.ConfluenceStandIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.rmi.RemoteException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConfluencePluginList#findNearest(String)}, the fallback for plugins whose POM doesn't name a wiki page,
+ * against a wiki with the given number of plugin pages. The queries are a mix of exact matches, titles one character
+ * off, and names without a page, so both outcomes are measured. {@link #scan()} is how the titles used to be searched,
+ * comparing the name to every one of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindNearestBenchmark {
+    @Param({"1000", "5000"})
+    public int pages;
+
+    private File dir;
+    private ConfluencePluginList list;
+    private String[] titles;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir("wiki");
+        File wiki = new File(dir, "wiki.jsonl");
+        PrintWriter w = new PrintWriter(wiki, "UTF-8");
+        try {
+            w.println(page(1, "Plugins"));
+            for (int i = 0; i < pages; i++) {
+                w.println(page(i + 2, "Sample " + i + " Plugin"));
+            }
+        } finally {
+            w.close();
+        }
+        list = new ConfluencePluginList(new ConfluenceStandIn(wiki).createService());
+        titles = new String[pages];
+        for (int i = 0; i < pages; i++) {
+            titles[i] = "sample-" + i; // as normalized from the page titles
+        }
+
+        Random r = new Random(Fixtures.SEED);
+        queries = new String[256];
+        for (int i = 0; i < queries.length; i++) {
+            int n = r.nextInt(pages);
+            switch (i % 3) {
+            case 0:
+                queries[i] = "sample-" + n;
+                break;
+            case 1:
+                queries[i] = "sampl-" + n;
+                break;
+            default:
+                queries[i] = "unrelated-" + n;
+            }
+        }
+    }
+
+    private static JSONObject page(long id, String title) {
+        JSONObject o = new JSONObject();
+        o.put("id", id);
+        o.put("title", title);
+        o.put("url", "https://wiki.jenkins-ci.org/display/JENKINS/" + title.replace(' ', '+'));
+        o.put("version", 1);
+        return o;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public RemotePage findNearest() throws RemoteException {
+        return list.findNearest(queries[next++ & (queries.length - 1)]);
+    }
+
+    @Benchmark
+    public String scan() {
+        String name = queries[next++ & (queries.length - 1)];
+        String nearest = EditDistance.findNearest(name, titles);
+        return EditDistance.editDistance(nearest, name) <= 1 ? nearest : null;
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.dom4j.DocumentFactory;
+import org.dom4j.io.SAXReader;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HPI;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Pinned inputs shared by the benchmarks. Everything is derived from a seed, so that two runs of the same benchmark
+ * measure the same work.
+ */
+final class Fixtures {
+    static final long SEED = 42;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Version numbers in the shapes found in the real repository: "1.2", "1.2.3", "1.10-beta-1", "2.0-SNAPSHOT".
+     * The result is shuffled and may contain duplicates, as the repository does across group IDs.
+     */
+    static List<String> versions(int n, long seed) {
+        Random r = new Random(seed);
+        List<String> versions = new ArrayList<String>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder v = new StringBuilder();
+            v.append(1 + i / 400).append('.').append(i % 400);
+            switch (r.nextInt(10)) {
+            case 0:
+                v.append('.').append(r.nextInt(5));
+                break;
+            case 1:
+                v.append("-beta-").append(1 + r.nextInt(3));
+                break;
+            case 2:
+                v.append("-SNAPSHOT");
+                break;
+            default:
+            }
+            versions.add(v.toString());
+        }
+        Collections.shuffle(versions, r);
+        return versions;
+    }
+
+    /**
+     * Writes an HPI with a manifest like the ones produced by maven-hpi-plugin, followed by {@code payload} random
+     * bytes, and returns it with its file set.
+     */
+    static HPI hpi(File dir, String groupId, String artifactId, String version, int payload, long seed)
+            throws IOException {
+        Random r = new Random(seed);
+        Manifest mf = new Manifest();
+        Attributes a = mf.getMainAttributes();
+        a.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        a.putValue("Built-By", "builder" + r.nextInt(100));
+        a.putValue("Long-Name", artifactId + " plugin");
+        a.putValue("Short-Name", artifactId);
+        a.putValue("Plugin-Version", version);
+        a.putValue("Jenkins-Version", "1.424");
+        a.putValue("Hudson-Version", "1.424");
+        StringBuilder deps = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            deps.append(i > 0 ? "," : "").append("dependency-").append(i).append(":1.").append(r.nextInt(50));
+            if (i % 3 == 0) {
+                deps.append(";resolution:=optional");
+            }
+        }
+        a.putValue("Plugin-Dependencies", deps.toString());
+        StringBuilder devs = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            devs.append(i > 0 ? "," : "").append("Developer ").append(i).append(":dev").append(i)
+                    .append(":dev").append(i).append("@example.org");
+        }
+        a.putValue("Plugin-Developers", devs.toString());
+
+        dir.mkdirs();
+        File f = new File(dir, artifactId + "-" + version + ".hpi");
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(f), mf);
+        try {
+            jar.putNextEntry(new JarEntry("WEB-INF/lib/" + artifactId + ".jar"));
+            byte[] buf = new byte[payload];
+            r.nextBytes(buf);
+            jar.write(buf);
+            jar.closeEntry();
+        } finally {
+            jar.close();
+        }
+
+        HPI hpi = new HPI(new GenericArtifactInfo("releases", groupId, artifactId, version, "", "hpi"));
+        hpi.file = f;
+        return hpi;
+    }
+
+    /**
+     * A plugin POM in the Maven namespace, with a parent, an SCM block and a wiki URL.
+     */
+    static String pom(String artifactId) {
+        return "<?xml version='1.0' encoding='UTF-8'?>\n"
+                + "<project xmlns='http://maven.apache.org/POM/4.0.0'>\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <parent>\n"
+                + "    <groupId>org.jenkins-ci.plugins</groupId>\n"
+                + "    <artifactId>plugin</artifactId>\n"
+                + "    <version>1.424</version>\n"
+                + "  </parent>\n"
+                + "  <groupId>org.jenkins-ci.plugins</groupId>\n"
+                + "  <artifactId>" + artifactId + "</artifactId>\n"
+                + "  <version>1.0</version>\n"
+                + "  <packaging>hpi</packaging>\n"
+                + "  <name>" + artifactId + " plugin</name>\n"
+                + "  <description>Does things with " + artifactId + " &amp; friends</description>\n"
+                + "  <url>https://wiki.jenkins-ci.org/display/JENKINS/" + artifactId + "+Plugin</url>\n"
+                + "  <developers>\n"
+                + "    <developer><id>dev0</id><name>Developer 0</name></developer>\n"
+                + "  </developers>\n"
+                + "  <scm>\n"
+                + "    <connection>scm:git:git://github.com/jenkinsci/" + artifactId + "-plugin.git</connection>\n"
+                + "    <url>https://github.com/jenkinsci/" + artifactId + "-plugin</url>\n"
+                + "  </scm>\n"
+                + "  <dependencies>\n"
+                + "    <dependency><groupId>org.jenkins-ci.plugins</groupId><artifactId>dependency-0</artifactId>"
+                + "<version>1.0</version></dependency>\n"
+                + "  </dependencies>\n"
+                + "</project>\n";
+    }
+
+    /**
+     * Same configuration as the reader {@code Main} uses for POMs.
+     */
+    static SAXReader xmlReader() {
+        DocumentFactory factory = new DocumentFactory();
+        factory.setXPathNamespaceURIs(Collections.singletonMap("m", "http://maven.apache.org/POM/4.0.0"));
+        return new SAXReader(factory);
+    }
+
+    static File tempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+}
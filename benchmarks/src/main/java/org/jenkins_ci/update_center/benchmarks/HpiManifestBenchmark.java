@@ -0,0 +1,57 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.model.HPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the {@code Plugin-Dependencies} and {@code Plugin-Developers} manifest entries, with the manifest
+ * already loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HpiManifestBenchmark {
+    private File dir;
+    private HPI hpi;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir("hpi");
+        hpi = Fixtures.hpi(dir, "org.jenkins-ci.plugins", "sample", "1.0", 1024, Fixtures.SEED);
+        hpi.getManifest();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public List<HPI.Dependency> getDependencies() throws IOException {
+        return hpi.getDependencies();
+    }
+
+    @Benchmark
+    public List<HPI.Developer> getDevelopers() throws IOException {
+        return hpi.getDevelopers();
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.model.HPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Manifest;
+
+/**
+ * Reading an artifact from the local repository: the SHA-1 of the whole file, computed for every entry of
+ * update-center.json, and the manifest, which is only read once per artifact. Once the file is in the page cache,
+ * this is what remains of the cost of an artifact besides the download.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MavenArtifactBenchmark {
+    @Param({"65536", "1048576", "16777216"})
+    public int payload;
+
+    private File dir;
+    private HPI hpi;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir("hpi");
+        hpi = Fixtures.hpi(dir, "org.jenkins-ci.plugins", "sample", "1.0", payload, Fixtures.SEED);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public String getDigest() throws IOException {
+        return hpi.getDigest();
+    }
+
+    @Benchmark
+    public Manifest getManifest() throws IOException {
+        // a fresh instance, since the manifest is cached
+        HPI h = new HPI(hpi.artifact);
+        h.file = hpi.file;
+        return h.getManifest();
+    }
+}
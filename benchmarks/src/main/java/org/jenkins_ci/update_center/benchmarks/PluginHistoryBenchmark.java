@@ -0,0 +1,65 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the release history of one plugin, one artifact at a time with
+ * {@link PluginHistory#addArtifact(HPI)} and at once with {@link PluginHistory#addArtifacts}, for plugins with many
+ * releases. One in five releases comes from the pre-Jenkins group ID, which exercises the pruning of
+ * non-authentic versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginHistoryBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int versions;
+
+    private List<HPI> artifacts;
+
+    @Setup
+    public void setUp() {
+        artifacts = new ArrayList<HPI>();
+        int i = 0;
+        for (String v : Fixtures.versions(versions, Fixtures.SEED)) {
+            String groupId = i++ % 5 == 0 ? "org.jvnet.hudson.plugins" : "org.jenkins-ci.plugins";
+            artifacts.add(new HPI(new GenericArtifactInfo("releases", groupId, "sample", v, "", "hpi")));
+        }
+    }
+
+    @Benchmark
+    public PluginHistory addArtifact() {
+        PluginHistory h = new PluginHistory("sample");
+        for (HPI hpi : artifacts) {
+            h.addArtifact(hpi);
+        }
+        return h;
+    }
+
+    @Benchmark
+    public PluginHistory addArtifacts() {
+        PluginHistory h = new PluginHistory("sample");
+        h.addArtifacts(artifacts);
+        return h;
+    }
+}
@@ -0,0 +1,73 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import hudson.plugins.jira.soap.RemotePage;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Plugin#toJSON()} for a plugin with a wiki page, a POM, dependencies and developers: the per-plugin work of
+ * update-center.json once everything is downloaded. This includes the SHA-1 of a small HPI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginJsonBenchmark {
+    private File dir;
+    private Plugin plugin;
+
+    @Setup
+    public void setUp() throws IOException, DocumentException {
+        dir = Fixtures.tempDir("hpi");
+        HPI latest = Fixtures.hpi(dir, "org.jenkins-ci.plugins", "sample", "1.1", 4096, Fixtures.SEED);
+        HPI previous = Fixtures.hpi(dir, "org.jenkins-ci.plugins", "sample", "1.0", 4096, Fixtures.SEED + 1);
+        Document pom = Fixtures.xmlReader().read(new StringReader(Fixtures.pom("sample")));
+
+        RemotePage page = new RemotePage();
+        page.setId(1);
+        page.setTitle("Sample Plugin");
+        page.setUrl("https://wiki.jenkins-ci.org/display/JENKINS/Sample+Plugin");
+        StringBuilder content = new StringBuilder("{excerpt}\n  This plugin integrates [Sample|http://example.org/]"
+                + " with Jenkins.\nSee [the docs|http://example.org/docs] and [more|http://example.org/more|tip]."
+                + "{excerpt}\n");
+        for (int i = 0; i < 50; i++) {
+            content.append("h2. Section ").append(i).append("\nSome text with a [link|http://example.org/")
+                    .append(i).append("].\n");
+        }
+        page.setContent(content.toString());
+
+        plugin = new Plugin("sample", latest, previous, pom, null, page, new String[]{"builder", "scm"});
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public JSONObject toJSON() throws IOException {
+        return plugin.toJSON();
+    }
+}
@@ -0,0 +1,84 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.Node;
+import org.dom4j.io.SAXReader;
+import org.jenkins_ci.update_center.model.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POM handling as done for every plugin: parsing with dom4j, then the XPath lookups of {@code Main} and
+ * {@link Plugin}, which are first tried without and then with the Maven namespace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PomBenchmark {
+    private static final String[] PATHS = {"/project/url", "/project/parent", "/project/scm/connection",
+            "/project/name", "/project/description"};
+
+    private String pom;
+    private SAXReader reader;
+    private Document parsed;
+
+    @Setup
+    public void setUp() throws DocumentException {
+        pom = Fixtures.pom("sample");
+        reader = Fixtures.xmlReader();
+        parsed = reader.read(new StringReader(pom));
+    }
+
+    @Benchmark
+    public Document parse() throws DocumentException {
+        return reader.read(new StringReader(pom));
+    }
+
+    @Benchmark
+    public void xpath(Blackhole bh) {
+        for (String path : PATHS) {
+            bh.consume(selectSingleNode(parsed, path));
+        }
+    }
+
+    @Benchmark
+    public void parseAndXpath(Blackhole bh) throws DocumentException {
+        Document doc = reader.read(new StringReader(pom));
+        for (String path : PATHS) {
+            bh.consume(selectSingleNode(doc, path));
+        }
+    }
+
+    @Benchmark
+    public String scmHost() throws IOException {
+        return new Plugin("sample", null, null, parsed, null, null, new String[0]).getScmHost();
+    }
+
+    /**
+     * Same lookup as {@code Main.selectSingleNode}.
+     */
+    private static Node selectSingleNode(Document pom, String path) {
+        Node result = pom.selectSingleNode(path);
+        if (result == null) {
+            result = pom.selectSingleNode(path.replaceAll("/", "/m:"));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.jenkins_ci.update_center.RedirectMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of finding the redirect of a request under {@code /latest/} with the given number of plugins.
+ * {@link #linear()} is how mod_alias goes through the {@code Redirect} lines of the {@code .htaccess}, comparing the
+ * path to each of them in turn, and {@link #map()} is the hashed lookup of a {@link RedirectMap}. A quarter of the
+ * queries have no redirect, which is the worst case of the former.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectLookupBenchmark {
+    @Param({"1000", "5000"})
+    public int plugins;
+
+    private String[] from;
+    private String[] to;
+    private Map<String, String> map;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        RedirectMap redirects = new RedirectMap(new StringWriter(), null, null);
+        PrintWriter w = new PrintWriter(redirects);
+        for (int i = 0; i < plugins; i++) {
+            w.printf("Redirect 302 %s %s\n", "/latest/sample-" + i + ".hpi",
+                    "/download/plugins/sample-" + i + "/1." + i + "/sample-" + i + ".hpi");
+        }
+        w.close();
+
+        from = new String[plugins];
+        to = new String[plugins];
+        int i = 0;
+        for (Map.Entry<String, String> e : redirects.getRedirects().entrySet()) {
+            from[i] = "/latest/" + e.getKey();
+            to[i] = e.getValue();
+            i++;
+        }
+        map = new HashMap<String, String>(redirects.getRedirects());
+
+        Random r = new Random(Fixtures.SEED);
+        queries = new String[256];
+        for (int q = 0; q < queries.length; q++) {
+            int n = r.nextInt(plugins);
+            queries[q] = "/latest/" + (q % 4 == 0 ? "missing-" : "sample-") + n + ".hpi";
+        }
+    }
+
+    @Benchmark
+    public String linear() {
+        String path = queries[next++ & (queries.length - 1)];
+        for (int i = 0; i < from.length; i++) {
+            // mod_alias matches whole path segments of the prefix
+            if (path.startsWith(from[i])
+                    && (path.length() == from[i].length() || path.charAt(from[i].length()) == '/')) {
+                return to[i] + path.substring(from[i].length());
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String map() {
+        String path = queries[next++ & (queries.length - 1)];
+        return map.get(path.substring("/latest/".length()));
+    }
+}
@@ -0,0 +1,99 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compares a report of {@link EndToEndBenchmark} with a baseline one, and fails if any metric of any phase grew by
+ * more than the threshold. Meant to run after the benchmark in CI, with the baseline kept next to the build:
+ * <pre>
+ * java ... RegressionCheck -baseline baseline.json -current report.json -threshold 0.15 -ignore rssPeakBytes
+ * </pre>
+ * Metrics that improved are reported too, as a hint that the baseline should be refreshed.
+ */
+public class RegressionCheck {
+    @Option(name = "-baseline", required = true, usage = "Report of a known good run")
+    public File baseline;
+
+    @Option(name = "-current", required = true, usage = "Report of the run to check")
+    public File current;
+
+    @Option(name = "-threshold", usage = "Tolerated relative increase of every metric, 0.1 for 10%")
+    public double threshold = 0.1;
+
+    @Option(name = "-ignore", usage = "Metric not to check, such as wallMillis. Can be repeated")
+    public List<String> ignored = new ArrayList<String>();
+
+    /**
+     * @return the number of regressions, counting a phase missing from the current report as one.
+     */
+    public int check() throws IOException {
+        JSONObject base = read(baseline).getJSONObject("phases");
+        JSONObject cur = read(current).getJSONObject("phases");
+
+        int regressions = 0;
+        for (Iterator<?> phases = base.keys(); phases.hasNext(); ) {
+            String phase = (String) phases.next();
+            if (!cur.has(phase)) {
+                System.out.println(phase + ": missing from " + current);
+                regressions++;
+                continue;
+            }
+            JSONObject b = base.getJSONObject(phase);
+            JSONObject c = cur.getJSONObject(phase);
+            for (Iterator<?> metrics = b.keys(); metrics.hasNext(); ) {
+                String metric = (String) metrics.next();
+                if (ignored.contains(metric) || !c.has(metric)) {
+                    continue;
+                }
+                long before = b.getLong(metric);
+                long after = c.getLong(metric);
+                if (before <= 0) {
+                    continue;   // not measured on this platform
+                }
+                double change = (double) (after - before) / before;
+                String verdict = "";
+                if (change > threshold) {
+                    verdict = "  REGRESSION";
+                    regressions++;
+                } else if (change < -threshold) {
+                    verdict = "  improved";
+                }
+                System.out.println(String.format("%-32s %14d -> %14d %+7.1f%%%s", phase + "." + metric, before, after,
+                        change * 100, verdict));
+            }
+        }
+        return regressions;
+    }
+
+    private static JSONObject read(File report) throws IOException {
+        return JSONObject.fromObject(FileUtils.readFileToString(report, "UTF-8"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        RegressionCheck c = new RegressionCheck();
+        CmdLineParser p = new CmdLineParser(c);
+        try {
+            p.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            p.printUsage(System.err);
+            System.exit(2);
+        }
+        int regressions = c.check();
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) beyond " + Math.round(c.threshold * 100) + "%");
+            System.exit(1);
+        }
+        System.out.println("No regression beyond " + Math.round(c.threshold * 100) + "%");
+    }
+}
@@ -0,0 +1,139 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.standin.GarbageCollections;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Snapshot of the resources used by this JVM so far. The difference between two snapshots is the cost of what ran
+ * in between, across all threads.
+ * <p/>
+ * The I/O and RSS figures come from {@code /proc/self} and are zero where it doesn't exist. Allocations are those of
+ * the whole JVM, threads that have ended included: counted by the JVM where it can (Java 21 and later), and otherwise
+ * as what the heap holds plus what the garbage collections freed. The heap peak is the most the heap held at once, as
+ * seen just before each collection.
+ */
+final class ResourceUsage {
+    private static final File PROC = new File("/proc/self");
+
+    final long wallNanos;
+    final long cpuNanos;
+    final long allocatedBytes;
+    final long readBytes;
+    final long writtenBytes;
+
+    private ResourceUsage() throws IOException {
+        wallNanos = System.nanoTime();
+        cpuNanos = processCpuTime();
+        allocatedBytes = allocatedBytes();
+        readBytes = proc("io", "rchar:");
+        writtenBytes = proc("io", "wchar:");
+    }
+
+    static ResourceUsage now() throws IOException {
+        return new ResourceUsage();
+    }
+
+    /**
+     * Resets the peak heap and RSS figures, so that the next {@link #since(ResourceUsage)} reports the peaks of that
+     * interval only.
+     */
+    static void resetPeaks() {
+        GarbageCollections.resetPeak();
+        File clearRefs = new File(PROC, "clear_refs");
+        if (clearRefs.canWrite()) {
+            try {
+                FileWriter w = new FileWriter(clearRefs);
+                try {
+                    w.write("5");   // resets VmHWM
+                } finally {
+                    w.close();
+                }
+            } catch (IOException e) {
+                // older kernels. The RSS peak is then that of the whole run
+            }
+        }
+    }
+
+    /**
+     * What has been used since the given snapshot, with the peaks since the last {@link #resetPeaks()}.
+     */
+    JSONObject since(ResourceUsage start) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put("wallMillis", (wallNanos - start.wallNanos) / 1000000);
+        o.put("cpuMillis", (cpuNanos - start.cpuNanos) / 1000000);
+        o.put("heapPeakBytes", GarbageCollections.peakHeap());
+        o.put("rssPeakBytes", proc("status", "VmHWM:") * 1024);
+        o.put("readBytes", readBytes - start.readBytes);
+        o.put("writtenBytes", writtenBytes - start.writtenBytes);
+        o.put("allocatedBytes", allocatedBytes - start.allocatedBytes);
+        return o;
+    }
+
+    private static long processCpuTime() {
+        Object os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes() {
+        if (TOTAL_ALLOCATED != null) {
+            try {
+                long total = (Long) TOTAL_ALLOCATED.invoke(ManagementFactory.getThreadMXBean());
+                if (total >= 0) {
+                    return total;
+                }
+            } catch (Exception e) {
+                // not supported by this JVM after all
+            }
+        }
+        return GarbageCollections.allocatedBytes();
+    }
+
+    /**
+     * {@code getTotalThreadAllocatedBytes()}, which counts the threads that have ended too, or null before Java 21.
+     */
+    private static final Method TOTAL_ALLOCATED = totalAllocated();
+
+    private static Method totalAllocated() {
+        try {
+            return com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a numeric field such as "rchar:" from a file of {@code /proc/self}.
+     */
+    private static long proc(String file, String field) throws IOException {
+        File f = new File(PROC, file);
+        if (!f.canRead()) {
+            return 0;
+        }
+        BufferedReader r = new BufferedReader(new FileReader(f));
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+                }
+            }
+            return 0;
+        } finally {
+            IOUtils.closeQuietly(r);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.openssl.PEMWriter;
+import org.bouncycastle.x509.X509V1CertificateGenerator;
+import org.jenkins_ci.update_center.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code Main.sign} over an update-center.json of the given number of plugins, signed by a throwaway key and
+ * self-signed certificate. This serializes the catalog in canonical form twice, and hashes and signs both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SignBenchmark {
+    @Param({"1000", "10000"})
+    public int plugins;
+
+    private File dir;
+    private Signer signer;
+    private JSONObject catalog;
+
+    /**
+     * Exposes {@link Main#sign(JSONObject)} to the benchmark.
+     */
+    static class Signer extends Main {
+        @Override
+        protected void sign(JSONObject o) throws GeneralSecurityException, IOException {
+            super.sign(o);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Fixtures.tempDir("sign");
+        signer = new Signer();
+        signer.privateKey = new File(dir, "key.pem");
+        File cert = new File(dir, "cert.crt");
+        signer.certificates.add(cert);
+        signer.rootCA.add(cert);    // so that the chain validates without printing errors every time
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair keys = kpg.generateKeyPair();
+        X509V1CertificateGenerator g = new X509V1CertificateGenerator();
+        X500Principal name = new X500Principal("CN=benchmark");
+        g.setSerialNumber(BigInteger.ONE);
+        g.setIssuerDN(name);
+        g.setSubjectDN(name);
+        g.setNotBefore(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+        g.setNotAfter(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365)));
+        g.setPublicKey(keys.getPublic());
+        g.setSignatureAlgorithm("SHA1withRSA");
+        X509Certificate c = g.generate(keys.getPrivate());
+        FileUtils.writeByteArrayToFile(cert, c.getEncoded());
+        PEMWriter w = new PEMWriter(new FileWriter(signer.privateKey));
+        try {
+            w.writeObject(keys.getPrivate());
+        } finally {
+            w.close();
+        }
+
+        catalog = catalog(plugins);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public JSONObject sign() throws Exception {
+        catalog.remove("signature");
+        signer.sign(catalog);
+        return catalog;
+    }
+
+    /**
+     * An update-center.json with entries shaped like those of {@code Plugin.toJSON()}.
+     */
+    static JSONObject catalog(int plugins) {
+        Random r = new Random(Fixtures.SEED);
+        JSONObject all = new JSONObject();
+        for (int i = 0; i < plugins; i++) {
+            String name = "plugin-" + i;
+            JSONObject o = new JSONObject();
+            o.put("name", name);
+            o.put("version", "1." + r.nextInt(100));
+            o.put("url", "http://updates.jenkins-ci.org/download/plugins/" + name + "/1.0/" + name + ".hpi");
+            o.put("buildDate", "Jan 01, 2012");
+            o.put("sha1", Long.toHexString(r.nextLong()) + Long.toHexString(r.nextLong()));
+            o.put("releaseTimestamp", "2012-01-01T00:00:00.00Z");
+            o.put("title", "Plugin " + i);
+            o.put("wiki", "https://wiki.jenkins-ci.org/display/JENKINS/Plugin+" + i);
+            o.put("excerpt", "Does something useful with <a href='http://example.org/" + i + "'>things</a>.");
+            o.put("labels", new String[]{"builder", "scm"});
+            o.put("scm", "github.com");
+            o.put("requiredCore", "1.424");
+            JSONArray deps = new JSONArray();
+            for (int d = 0; d < r.nextInt(5); d++) {
+                JSONObject dep = new JSONObject();
+                dep.put("name", "plugin-" + r.nextInt(plugins));
+                dep.put("version", "1.0");
+                dep.put("optional", r.nextBoolean());
+                deps.add(dep);
+            }
+            o.put("dependencies", deps);
+            JSONArray devs = new JSONArray();
+            JSONObject dev = new JSONObject();
+            dev.put("developerId", "dev" + r.nextInt(500));
+            dev.put("name", "Developer");
+            devs.add(dev);
+            o.put("developers", devs);
+            all.put(name, o);
+        }
+
+        JSONObject root = new JSONObject();
+        root.put("updateCenterVersion", "1");
+        root.put("plugins", all);
+        root.put("id", "benchmark");
+        return root;
+    }
+}
@@ -0,0 +1,133 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import hudson.util.VersionNumber;
+import org.jenkins_ci.update_center.model.VersionKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Version-keyed {@link TreeMap}s, in newest-first order, are how the generator keeps every release history and the
+ * list of core releases. This measures filling and probing them, with and without the parsing of the version strings,
+ * and sorting, keyed by {@link VersionNumber} and by {@link VersionKey}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionNumberBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<String> strings;
+    private VersionNumber[] parsed;
+    private TreeMap<VersionNumber, String> filled;
+    private VersionKey[] keys;
+
+    @Setup
+    public void setUp() {
+        strings = Fixtures.versions(size, Fixtures.SEED);
+        parsed = new VersionNumber[strings.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = new VersionNumber(strings.get(i));
+        }
+        filled = put();
+        keys = new VersionKey[strings.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = VersionKey.of(strings.get(i));
+        }
+    }
+
+    @Benchmark
+    public TreeMap<VersionNumber, String> parseAndPut() {
+        TreeMap<VersionNumber, String> m = new TreeMap<VersionNumber, String>(VersionNumber.DESCENDING);
+        for (String s : strings) {
+            m.put(new VersionNumber(s), s);
+        }
+        return m;
+    }
+
+    @Benchmark
+    public TreeMap<VersionNumber, String> put() {
+        TreeMap<VersionNumber, String> m = new TreeMap<VersionNumber, String>(VersionNumber.DESCENDING);
+        for (int i = 0; i < parsed.length; i++) {
+            m.put(parsed[i], strings.get(i));
+        }
+        return m;
+    }
+
+    @Benchmark
+    public TreeMap<VersionKey, String> parseAndPutKeys() {
+        TreeMap<VersionKey, String> m = new TreeMap<VersionKey, String>(VersionKey.DESCENDING);
+        for (String s : strings) {
+            m.put(VersionKey.of(s), s);
+        }
+        return m;
+    }
+
+    @Benchmark
+    public VersionNumber[] parseAndSort() {
+        VersionNumber[] a = new VersionNumber[strings.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = new VersionNumber(strings.get(i));
+        }
+        Arrays.sort(a, VersionNumber.DESCENDING);
+        return a;
+    }
+
+    @Benchmark
+    public VersionKey[] parseAndSortKeys() {
+        VersionKey[] a = new VersionKey[strings.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = VersionKey.of(strings.get(i));
+        }
+        Arrays.sort(a, VersionKey.DESCENDING);
+        return a;
+    }
+
+    @Benchmark
+    public VersionNumber[] sort() {
+        VersionNumber[] a = parsed.clone();
+        Arrays.sort(a, VersionNumber.DESCENDING);
+        return a;
+    }
+
+    @Benchmark
+    public VersionKey[] sortKeys() {
+        VersionKey[] a = keys.clone();
+        Arrays.sort(a, VersionKey.DESCENDING);
+        return a;
+    }
+
+    @Benchmark
+    public void get(Blackhole bh) {
+        for (VersionNumber v : parsed) {
+            bh.consume(filled.get(v));
+        }
+    }
+
+    @Benchmark
+    public void headMapIteration(Blackhole bh) {
+        // the shape of the pruning loop in PluginHistory.addArtifact
+        VersionNumber tippingPoint = parsed[parsed.length / 2];
+        for (String s : filled.headMap(tippingPoint).values()) {
+            bh.consume(s);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.jenkins_ci.update_center.benchmarks;
+
+import org.jenkins_ci.update_center.model.WikiExcerpt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link WikiExcerpt} against the regular expressions it replaced ({@link #regex()}), on wiki pages of the given
+ * size: an ordinary page with an excerpt near the top, a page full of excerpt macros that are never closed, and an
+ * excerpt full of links that are never closed. The regular expressions backtrack over the rest of the page for each
+ * unclosed macro or link, so the last two are quadratic for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WikiExcerptBenchmark {
+    private static final Pattern EXCERPT_PATTERN =
+            Pattern.compile("\\{excerpt(?::hidden(?:=true)?)?\\}\\s*(.+)\\{excerpt\\}", Pattern.DOTALL);
+    private static final Pattern HYPERLINK_PATTERN = Pattern.compile("\\[([^|\\]]+)\\|([^|\\]]+)(|([^]])+)?\\]");
+    private static final Pattern NEWLINE_PATTERN = Pattern.compile("(?:\\r\\n|\\n)");
+
+    @Param({"page", "unclosedExcerpts", "unclosedLinks"})
+    public String kind;
+
+    @Param({"1000", "10000"})
+    public int length;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        StringBuilder b = new StringBuilder();
+        if (kind.equals("page")) {
+            b.append("{excerpt}\n  This plugin integrates [Sample|http://example.org/] with Jenkins.{excerpt}\n");
+            for (int i = 0; b.length() < length; i++) {
+                b.append("h2. Section ").append(i).append("\nSome text with a [link|http://example.org/")
+                        .append(i).append("] and more text.\n");
+            }
+        } else if (kind.equals("unclosedExcerpts")) {
+            while (b.length() < length) {
+                b.append("{excerpt:hidden}Text ");
+            }
+        } else {
+            b.append("{excerpt}");
+            while (b.length() < length) {
+                b.append("[a|b|");
+            }
+            b.append("{excerpt}");
+        }
+        content = b.toString();
+    }
+
+    @Benchmark
+    public String regex() {
+        Matcher m = EXCERPT_PATTERN.matcher(content);
+        if (!m.find()) {
+            return null;
+        }
+        String oneLiner = NEWLINE_PATTERN.matcher(m.group(1)).replaceAll(" ");
+        return HYPERLINK_PATTERN.matcher(oneLiner).replaceAll("<a href='$2'>$1</a>");
+    }
+
+    @Benchmark
+    public String scanner() {
+        return WikiExcerpt.toHtml(content);
+    }
+}
@@ -0,0 +1,78 @@
+package org.jenkins_ci.update_center;
+
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The canonical forms of the plugin entries of the update center, as {@link JSONObject#writeCanonical(Writer)}
+ * writes them, each computed once when the plugin is built or taken from the {@link FragmentCache}, so that signing
+ * the update center doesn't canonicalize the whole of it again.
+ */
+public class CanonicalPlugins {
+    private static final String PLUGINS = "\"plugins\":{}";
+
+    private final Map<String, String> entries = new TreeMap<String, String>();
+
+    /**
+     * Computes the canonical form of a plugin entry, as it appears in the canonical form of the "plugins" object.
+     */
+    public static String entry(String name, JSONObject plugin) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put(name, plugin);
+        StringWriter w = new StringWriter();
+        o.writeCanonical(w);
+        String s = w.toString();
+        return s.substring(1, s.length() - 1);
+    }
+
+    /**
+     * @param entry {@link #entry(String, JSONObject)} of the plugin.
+     */
+    public synchronized void add(String name, String entry) {
+        entries.put(name, entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the canonical form of the given update center, with the plugin entries kept here as its plugins,
+     * without canonicalizing them again.
+     *
+     * @return The writer.
+     */
+    public synchronized Writer writeInto(JSONObject root, Writer w) throws IOException {
+        JSONObject shell = new JSONObject();
+        for (Iterator<?> itr = root.keys(); itr.hasNext(); ) {
+            String key = (String) itr.next();
+            shell.put(key, key.equals("plugins") ? new JSONObject() : root.get(key));
+        }
+        StringWriter document = new StringWriter();
+        shell.writeCanonical(document);
+        String d = document.toString();
+
+        int i = d.indexOf(PLUGINS);
+        if (i < 0) {
+            throw new IllegalArgumentException("No plugins in the document");
+        }
+        int brace = i + PLUGINS.length() - 1;
+        w.write(d, 0, brace);
+        boolean first = true;
+        for (String entry : entries.values()) {
+            if (!first) {
+                w.write(',');
+            }
+            first = false;
+            w.write(entry);
+        }
+        w.write(d, brace, d.length() - brace);
+        return w;
+    }
+}
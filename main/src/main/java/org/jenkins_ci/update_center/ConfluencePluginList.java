@@ -23,22 +23,38 @@
  */
 package org.jenkins_ci.update_center;
 
-import com.sun.xml.bind.v2.util.EditDistance;
 import hudson.plugins.jira.soap.ConfluenceSoapService;
 import hudson.plugins.jira.soap.RemoteLabel;
 import hudson.plugins.jira.soap.RemotePage;
 import hudson.plugins.jira.soap.RemotePageSummary;
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.metrics.Tracer;
 import org.jvnet.hudson.confluence.Confluence;
 
 import javax.xml.rpc.ServiceException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,28 +63,112 @@ import java.util.regex.Pattern;
  * <p/>
  * <p/>
  * See http://confluence.atlassian.com/display/DOC/Remote+API+Specification for the confluence API.
+ * <p/>
+ * Can be used by several threads at once. When they ask for the same page or labels at the same time, only one of
+ * them fetches it and the others wait for its result. How many calls are made to the wiki at once and per second can
+ * be limited with {@link #setLimits(int, double)}. Pages and their labels can be fetched ahead of time in the
+ * background with {@link #prefetch(String)} and {@link #prefetchNearest(String)}: these wait in a bounded queue, and
+ * are dropped when it is full. Pages and labels are kept in memory, or only the most recently used ones with
+ * {@link #setCacheSize(int)}.
  *
  * @author Kohsuke Kawaguchi
  */
 public class ConfluencePluginList {
     private final ConfluenceSoapService service;
     private final Map<String, RemotePageSummary> children = new HashMap<String, RemotePageSummary>();
-    private final String[] normalizedTitles;
+    private final TitleIndex normalizedTitles;
+
+    private volatile int cacheSize = Integer.MAX_VALUE;
+    private final Map<String, FutureTask<RemotePage>> pageCache = lru();
+    private final Map<Long, FutureTask<String[]>> labelCache = lru();
+    private final Map<String, FutureTask<String>> redirectCache = lru();
 
-    private final Map<String, RemotePage> pageCache = new HashMap<String, RemotePage>();
-    private final Map<Long, String[]> labelCache = new HashMap<Long, String[]>();
+    private final ThreadPoolExecutor prefetcher = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS,
+            10, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE), PREFETCH_THREAD_FACTORY);
+
+    private final Throttle throttle = new Throttle();
 
     private String wikiSessionId;
     private static final String WIKI_URL = "https://wiki.jenkins-ci.org/";
 
     public ConfluencePluginList() throws IOException, ServiceException {
-        service = Confluence.connect(new URL(WIKI_URL));
-        RemotePage page = service.getPage("", "JENKINS", "Plugins");
+        this(Confluence.connect(new URL(WIKI_URL)));
+    }
+
+    /**
+     * Uses the given service instead of wiki.jenkins-ci.org, such as a stand-in for tests.
+     */
+    public ConfluencePluginList(ConfluenceSoapService service) throws IOException {
+        this.service = instrument(service, throttle);
+        RemotePage page = this.service.getPage("", "JENKINS", "Plugins");
 
-        for (RemotePageSummary child : service.getChildren("", page.getId())) {
+        for (RemotePageSummary child : this.service.getChildren("", page.getId())) {
             children.put(normalize(child.getTitle()), child);
         }
-        normalizedTitles = children.keySet().toArray(new String[children.size()]);
+        normalizedTitles = new TitleIndex(children.keySet().toArray(new String[children.size()]));
+        prefetcher.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Limits the calls made to the wiki from now on.
+     *
+     * @param connections How many calls can be made at once, or 0 for no limit.
+     * @param callsPerSecond How many calls can be started per second, or 0 for no limit.
+     */
+    public void setLimits(int connections, double callsPerSecond) {
+        throttle.setLimits(connections, callsPerSecond);
+    }
+
+    /**
+     * Sets how many pages, and how many sets of labels, are kept in memory. They only need to stay there from when
+     * they are prefetched until they are looked up.
+     */
+    public void setCacheSize(int entries) {
+        this.cacheSize = entries;
+    }
+
+    /**
+     * A map that forgets the least recently used entries beyond {@link #cacheSize}.
+     */
+    private <K, V> Map<K, FutureTask<V>> lru() {
+        return new LinkedHashMap<K, FutureTask<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, FutureTask<V>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Wraps the service so that every call is throttled and its duration recorded in
+     * {@link Metrics#WIKI_REQUEST_SECONDS}.
+     */
+    private static ConfluenceSoapService instrument(final ConfluenceSoapService service, final Throttle throttle) {
+        return (ConfluenceSoapService) Proxy.newProxyInstance(ConfluenceSoapService.class.getClassLoader(),
+                new Class[]{ConfluenceSoapService.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(service, args);
+                        }
+                        Semaphore permit;
+                        try {
+                            permit = throttle.acquire();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RemoteException("Interrupted while waiting to call the wiki", e);
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            return method.invoke(service, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        } finally {
+                            Throttle.release(permit);
+                            Metrics.histogram(Metrics.WIKI_REQUEST_SECONDS, "call", method.getName())
+                                    .observeSince(start);
+                        }
+                    }
+                });
     }
 
     /**
@@ -86,33 +186,114 @@ public class ConfluencePluginList {
      * Finds the closest match, if any. Otherwise null.
      */
     public RemotePage findNearest(String pluginArtifactId) throws RemoteException {
-        // comparison is case insensitive
-        pluginArtifactId = pluginArtifactId.toLowerCase();
+        Tracer.Span span = Tracer.begin("findNearest", pluginArtifactId);
+        try {
+            // comparison is case insensitive
+            pluginArtifactId = pluginArtifactId.toLowerCase();
 
-        String nearest = EditDistance.findNearest(pluginArtifactId, normalizedTitles);
-        if (EditDistance.editDistance(nearest, pluginArtifactId) <= 1) {
-            System.out.println("** No wiki page specified.. picking one with similar name."
-                    + "\nUsing '" + nearest + "' for " + pluginArtifactId);
-            return service.getPage("", "JENKINS", children.get(nearest).getTitle());
-        } else {
-            return null;    // too far
+            String nearest = normalizedTitles.findNearest(pluginArtifactId);
+            if (nearest != null) {
+                System.out.println("** No wiki page specified.. picking one with similar name."
+                        + "\nUsing '" + nearest + "' for " + pluginArtifactId);
+                return getPageByName(children.get(nearest).getTitle());
+            } else {
+                return null;    // too far
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Whether the URL points to a page of this wiki, as understood by {@link #getPage(String)}.
+     */
+    public boolean isPageUrl(String url) {
+        if (TINYLINK_PATTERN.matcher(url).matches()) {
+            return true;
+        }
+        for (String p : WIKI_PREFIXES) {
+            if (url.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts fetching the page at the given URL and its labels in the background, so that {@link #getPage(String)}
+     * and {@link #getLabels(RemotePage)} find them in memory. Failures are left for them to report.
+     */
+    public void prefetch(final String url) {
+        background(new Runnable() {
+            public void run() {
+                Tracer.Span span = Tracer.begin("prefetch", url);
+                try {
+                    getLabelsUntraced(getPageUntraced(url));
+                } catch (Exception e) {
+                    // reported when the page is looked up
+                } finally {
+                    span.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts fetching what {@link #findNearest(String)} would return and its labels in the background.
+     */
+    public void prefetchNearest(String pluginArtifactId) {
+        String nearest = normalizedTitles.findNearest(pluginArtifactId.toLowerCase());
+        if (nearest == null) {
+            return;
+        }
+        final String title = children.get(nearest).getTitle();
+        background(new Runnable() {
+            public void run() {
+                Tracer.Span span = Tracer.begin("prefetch", title);
+                try {
+                    getLabelsUntraced(getPageByName(title));
+                } catch (Exception e) {
+                    // reported when the page is looked up
+                } finally {
+                    span.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a prefetch in the background, unless too many are waiting already.
+     */
+    private void background(Runnable prefetch) {
+        try {
+            prefetcher.execute(prefetch);
+        } catch (RejectedExecutionException e) {
+            // dropped: the lookup will fetch it
         }
     }
 
     public RemotePage getPage(String url) throws RemoteException {
+        Tracer.Span span = Tracer.begin("getPage", url);
+        try {
+            return getPageUntraced(url);
+        } finally {
+            span.end();
+        }
+    }
+
+    private RemotePage getPageUntraced(String url) throws RemoteException {
         Matcher tinylink = TINYLINK_PATTERN.matcher(url);
         if (tinylink.matches()) {
-            try {
-                // Avoid creating lots of sessions on wiki server.. get a session and reuse it.
-                if (wikiSessionId == null) {
-                    wikiSessionId = initSession(WIKI_URL);
+            final String id = tinylink.group(1);
+            url = fetchOnce(redirectCache, id, "wikiRedirect", new Callable<String>() {
+                public String call() throws RemoteException {
+                    try {
+                        return checkRedirect(WIKI_URL + "pages/tinyurl.action?urlIdentifier=" + id, getSession());
+                    } catch (IOException e) {
+                        throw new RemoteException("Failed to lookup tinylink redirect", e);
+                    }
                 }
-                url = checkRedirect(
-                        WIKI_URL + "pages/tinyurl.action?urlIdentifier=" + tinylink.group(1),
-                        wikiSessionId);
-            } catch (IOException e) {
-                throw new RemoteException("Failed to lookup tinylink redirect", e);
-            }
+            });
         }
         for (String p : WIKI_PREFIXES) {
             if (!url.startsWith(p)) {
@@ -120,57 +301,186 @@ public class ConfluencePluginList {
             }
 
             String pageName = url.substring(p.length()).replace('+', ' '); // poor hack for URL escape
+            return getPageByName(pageName);
+        }
+        throw new IllegalArgumentException("** Failed to resolve " + url);
+    }
 
-            RemotePage page = pageCache.get(pageName);
-            if (page == null) {
-                page = service.getPage("", "JENKINS", pageName);
-                pageCache.put(pageName, page);
+    private RemotePage getPageByName(final String pageName) throws RemoteException {
+        return fetchOnce(pageCache, pageName, "wikiPage", new Callable<RemotePage>() {
+            public RemotePage call() throws RemoteException {
+                return service.getPage("", "JENKINS", pageName);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached value for the key, fetching it if no other thread has or is, and waiting for that thread
+     * otherwise. Failures are not cached.
+     */
+    private static <K, V> V fetchOnce(Map<K, FutureTask<V>> cache, K key, String name, Callable<V> fetch)
+            throws RemoteException {
+        FutureTask<V> f;
+        boolean hit;
+        synchronized (cache) {
+            f = cache.get(key);
+            hit = f != null;
+            if (f == null) {
+                f = new FutureTask<V>(fetch);
+                cache.put(key, f);
             }
-            return page;
         }
-        throw new IllegalArgumentException("** Failed to resolve " + url);
+        if (!hit) {
+            f.run();
+        }
+        Metrics.cache(name, hit);
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for " + key, e);
+        } catch (ExecutionException e) {
+            synchronized (cache) {
+                if (cache.get(key) == f) {
+                    cache.remove(key);
+                }
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RemoteException("Failed to fetch " + key, cause);
+        }
     }
 
-    private static String checkRedirect(String url, String sessionId) throws IOException {
+    /**
+     * Avoid creating lots of sessions on wiki server.. get a session and reuse it.
+     */
+    private synchronized String getSession() throws IOException {
+        if (wikiSessionId == null) {
+            wikiSessionId = initSession(WIKI_URL);
+        }
+        return wikiSessionId;
+    }
+
+    private String checkRedirect(String url, String sessionId) throws IOException {
         return connect(url, sessionId).getHeaderField("Location");
     }
 
-    private static String initSession(String url) throws IOException {
+    private String initSession(String url) throws IOException {
         String cookie = connect(url, null).getHeaderField("Set-Cookie");
         return cookie.substring(0, cookie.indexOf(';')); // Remove ;Path=/
     }
 
-    private static HttpURLConnection connect(String url, String sessionId) throws IOException {
-        HttpURLConnection huc = (HttpURLConnection) new URL(url).openConnection();
-        huc.setInstanceFollowRedirects(false);
-        huc.setDoOutput(false);
-        if (sessionId != null) {
-            huc.addRequestProperty("Cookie", sessionId);
+    private HttpURLConnection connect(String url, String sessionId) throws IOException {
+        Semaphore permit;
+        try {
+            permit = throttle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to call the wiki");
         }
-        InputStream i = huc.getInputStream();
-        while (i.read() >= 0) {
-            ; // Drain stream
+        try {
+            long start = System.nanoTime();
+            HttpURLConnection huc = (HttpURLConnection) new URL(url).openConnection();
+            huc.setInstanceFollowRedirects(false);
+            huc.setDoOutput(false);
+            if (sessionId != null) {
+                huc.addRequestProperty("Cookie", sessionId);
+            }
+            InputStream i = huc.getInputStream();
+            while (i.read() >= 0) {
+                ; // Drain stream
+            }
+            Metrics.histogram(Metrics.WIKI_REQUEST_SECONDS, "call", sessionId == null ? "session" : "tinyurl")
+                    .observeSince(start);
+            return huc;
+        } finally {
+            Throttle.release(permit);
         }
-        return huc;
     }
 
     public String[] getLabels(RemotePage page) throws RemoteException {
-        String[] r = labelCache.get(page.getId());
-        if (r == null) {
-            RemoteLabel[] labels = service.getLabelsById("", page.getId());
-            if (labels == null) {
-                return new String[0];
-            }
-            ArrayList<String> result = new ArrayList<String>(labels.length);
-            for (RemoteLabel label : labels) {
-                if (label.getName().startsWith("plugin-")) {
-                    result.add(label.getName().substring(7));
+        Tracer.Span span = Tracer.begin("getLabels", page.getTitle());
+        try {
+            return getLabelsUntraced(page);
+        } finally {
+            span.end();
+        }
+    }
+
+    private String[] getLabelsUntraced(final RemotePage page) throws RemoteException {
+        return fetchOnce(labelCache, page.getId(), "wikiLabels", new Callable<String[]>() {
+            public String[] call() throws RemoteException {
+                RemoteLabel[] labels = service.getLabelsById("", page.getId());
+                if (labels == null) {
+                    return new String[0];
+                }
+                ArrayList<String> result = new ArrayList<String>(labels.length);
+                for (RemoteLabel label : labels) {
+                    if (label.getName().startsWith("plugin-")) {
+                        result.add(label.getName().substring(7));
+                    }
+                }
+                return result.toArray(new String[result.size()]);
+            }
+        });
+    }
+
+    /**
+     * Bounds how many calls are made to the wiki at once, and spaces them out to a maximum rate.
+     */
+    private static final class Throttle {
+        private volatile Semaphore connections;
+        private long interval;
+        private long next = System.nanoTime();
+
+        synchronized void setLimits(int connections, double callsPerSecond) {
+            this.connections = connections > 0 ? new Semaphore(connections, true) : null;
+            this.interval = callsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / callsPerSecond) : 0;
+        }
+
+        /**
+         * Waits until a call can be made.
+         *
+         * @return The permit to {@link #release(Semaphore)} once the call is done.
+         */
+        Semaphore acquire() throws InterruptedException {
+            Semaphore s = connections;
+            if (s != null) {
+                s.acquire();
+            }
+            try {
+                long wait;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    if (next - now < 0) {
+                        next = now;
+                    }
+                    wait = next - now;
+                    next += interval;
                 }
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                return s;
+            } catch (InterruptedException e) {
+                release(s);
+                throw e;
+            }
+        }
+
+        static void release(Semaphore permit) {
+            if (permit != null) {
+                permit.release();
             }
-            r = result.toArray(new String[result.size()]);
-            labelCache.put(page.getId(), r);
         }
-        return r;
     }
 
     private static final String[] WIKI_PREFIXES = {
@@ -180,5 +490,21 @@ public class ConfluencePluginList {
             "http://hudson.gotdns.com/wiki/display/HUDSON/",
     };
 
+    private static final int PREFETCH_THREADS = 8;
+    /**
+     * How many prefetches can wait for a thread.
+     */
+    private static final int PREFETCH_QUEUE = 256;
+    /**
+     * Static, so that the idle prefetch threads don't keep this list and its pages alive until they time out.
+     */
+    private static final ThreadFactory PREFETCH_THREAD_FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "wiki-prefetch");
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
     private static final Pattern TINYLINK_PATTERN = Pattern.compile(".*/x/(\\w+)");
 }
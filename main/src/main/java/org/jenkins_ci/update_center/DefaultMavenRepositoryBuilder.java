@@ -24,6 +24,7 @@
 package org.jenkins_ci.update_center;
 
 import org.jenkins_ci.update_center.repo.ArtifactoryRepositoryImpl;
+import org.jenkins_ci.update_center.repo.BlobStore;
 import org.jenkins_ci.update_center.repo.MavenRepository;
 import org.jenkins_ci.update_center.repo.NexusRepositoryImpl;
 
@@ -52,6 +53,28 @@ public class DefaultMavenRepositoryBuilder {
         return this;
     }
 
+    /**
+     * Points the repository at another Artifactory instance, such as a local stand-in.
+     */
+    public DefaultMavenRepositoryBuilder withRepositoryUrl(String repoUrl) {
+        if (!(instance instanceof ArtifactoryRepositoryImpl)) {
+            throw new IllegalArgumentException("Only the Artifactory repository implementation supports a custom URL");
+        }
+        ((ArtifactoryRepositoryImpl) instance).setRepositoryUrl(repoUrl);
+        return this;
+    }
+
+    /**
+     * Stores the downloaded artifacts in a blob store, so that the same contents are only kept once.
+     */
+    public DefaultMavenRepositoryBuilder withBlobStore(BlobStore blobs) {
+        if (!(instance instanceof ArtifactoryRepositoryImpl)) {
+            throw new IllegalArgumentException("Only the Artifactory repository implementation supports a blob store");
+        }
+        ((ArtifactoryRepositoryImpl) instance).setBlobStore(blobs);
+        return this;
+    }
+
     public MavenRepository getInstance() {
         return instance;
     }
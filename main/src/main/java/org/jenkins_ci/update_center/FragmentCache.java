@@ -0,0 +1,169 @@
+package org.jenkins_ci.update_center;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The JSON of plugins from earlier runs, on disk, keyed by a {@link Fingerprint} of everything it was computed from.
+ * <p/>
+ * Along with the JSON, its canonical form can be kept, for signing.
+ * <p/>
+ * Entries are never invalidated, since a change in the inputs is a different key. Those that haven't been used for a
+ * while can be deleted by age, as their modification time is updated whenever they are used.
+ */
+public class FragmentCache {
+    private final File dir;
+
+    public FragmentCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the JSON stored for the fingerprint, or null.
+     */
+    public JSONObject get(String fingerprint) {
+        File f = file(fingerprint);
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONObject.fromObject(FileUtils.readFileToString(f, "UTF-8"));
+            f.setLastModified(System.currentTimeMillis());
+            return json;
+        } catch (IOException e) {
+            return null; // deleted in the meantime
+        } catch (JSONException e) {
+            System.out.println("** Ignoring corrupt " + f);
+            return null;
+        }
+    }
+
+    public void put(String fingerprint, JSONObject json) throws IOException {
+        write(file(fingerprint), json.toString());
+    }
+
+    private static void write(File f, String contents) throws IOException {
+        f.getParentFile().mkdirs();
+        File tmp = File.createTempFile(f.getName(), ".tmp", f.getParentFile());
+        try {
+            FileUtils.writeStringToFile(tmp, contents, "UTF-8");
+            if (!tmp.renameTo(f) && !f.exists()) {
+                throw new IOException("Failed to rename " + tmp + " to " + f);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Returns the canonical form stored for the fingerprint, or null.
+     */
+    public String getCanonical(String fingerprint) {
+        try {
+            File f = file(fingerprint, ".canonical");
+            return f.exists() ? FileUtils.readFileToString(f, "UTF-8") : null;
+        } catch (IOException e) {
+            return null; // deleted in the meantime
+        }
+    }
+
+    /**
+     * @param canonical {@link CanonicalPlugins#entry(String, JSONObject)} of the JSON stored for the fingerprint.
+     */
+    public void putCanonical(String fingerprint, String canonical) throws IOException {
+        write(file(fingerprint, ".canonical"), canonical);
+    }
+
+    private File file(String fingerprint) {
+        return file(fingerprint, ".json");
+    }
+
+    private File file(String fingerprint, String extension) {
+        return new File(dir, fingerprint.substring(0, 2) + "/" + fingerprint + extension);
+    }
+
+    /**
+     * A SHA-1 digest of the inputs of some JSON, in hex.
+     */
+    public static class Fingerprint {
+        private final MessageDigest digest;
+
+        public Fingerprint() {
+            try {
+                digest = MessageDigest.getInstance("SHA1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        /**
+         * Adds a value, or null, distinctly from any other sequence of values.
+         */
+        public Fingerprint add(Object value) {
+            if (value == null) {
+                digest.update((byte) 0);
+            } else {
+                String s = value.toString();
+                try {
+                    digest.update((byte) 1);
+                    digest.update(Integer.toString(s.length()).getBytes("UTF-8"));
+                    digest.update((byte) ':');
+                    digest.update(s.getBytes("UTF-8"));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds the name, size and modification time of a file, or null.
+         */
+        public Fingerprint addStat(File f) {
+            add(f);
+            if (f != null) {
+                add(f.length()).add(f.lastModified());
+            }
+            return this;
+        }
+
+        /**
+         * Adds the contents of a file, or null.
+         */
+        public Fingerprint addContents(File f) throws IOException {
+            if (f == null) {
+                return add(null);
+            }
+            add(f.length());
+            InputStream in = new FileInputStream(f);
+            try {
+                byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) >= 0) {
+                    digest.update(buf, 0, len);
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder();
+            for (byte x : digest.digest()) {
+                b.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+            }
+            return b.toString();
+        }
+    }
+}
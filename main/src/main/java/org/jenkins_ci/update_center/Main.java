@@ -40,13 +40,19 @@ import org.dom4j.DocumentFactory;
 import org.dom4j.Element;
 import org.dom4j.Node;
 import org.dom4j.io.SAXReader;
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.metrics.Tracer;
 import org.jenkins_ci.update_center.model.GenericArtifactInfo;
 import org.jenkins_ci.update_center.model.HPI;
 import org.jenkins_ci.update_center.model.HudsonWar;
 import org.jenkins_ci.update_center.model.MavenArtifact;
 import org.jenkins_ci.update_center.model.Plugin;
 import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+import org.jenkins_ci.update_center.repo.BlobStore;
+import org.jenkins_ci.update_center.repo.InstrumentedMavenRepository;
 import org.jenkins_ci.update_center.repo.MavenRepository;
+import org.jenkins_ci.update_center.repo.PrefetchingMavenRepository;
 import org.jenkins_ci.update_center.repo.VersionCappedMavenRepository;
 import org.jvnet.hudson.crypto.CertificateUtil;
 import org.jvnet.hudson.crypto.SignatureOutputStream;
@@ -71,10 +77,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.security.Security.addProvider;
 
@@ -91,6 +101,13 @@ public class Main {
     @Option(name = "-h", usage = "htaccess file")
     public File htaccess = new File(".htaccess");
 
+    @Option(name = "-redirectMap", usage = "Write the redirects of -h to this RewriteMap txt: file instead, and make "
+            + "-h only look them up in it, as the \"" + RedirectMap.MAP_NAME + "\" map of the server configuration")
+    public File redirectMap = null;
+
+    @Option(name = "-nginxMap", usage = "Also write the redirects of -h to this file, as an nginx map")
+    public File nginxMap = null;
+
     /**
      * This option builds the directory image for the download server.
      */
@@ -100,6 +117,15 @@ public class Main {
     @Option(name = "-www", usage = "Built jenkins-ci.org layout")
     public File www = null;
 
+    @Option(name = "-stageWww", usage = "Build -www in a new directory next to it, and make -www a symbolic link to it "
+            + "at the end, so that it is never served half-written")
+    public boolean stageWww;
+
+    /**
+     * Where -www is built with -stageWww.
+     */
+    private StagedTree stagedWww;
+
     @Option(name = "-index.html",
             usage = "Update the version number of the latest jenkins.war in jenkins-ci.org/index.html")
     public File indexHtml = null;
@@ -156,6 +182,87 @@ public class Main {
             "may be 'artifactory' or 'nexus'. Artifactory is used by default")
     public String repoImpl = null;
 
+    @Option(name = "-repoUrl", usage = "Base URL of the Artifactory instance to query instead of repo.jenkins-ci.org")
+    public String repoUrl = null;
+
+    @Option(name = "-metrics", usage = "Write timings and counters of the run to this file, in the Prometheus text format")
+    public File metrics = null;
+
+    @Option(name = "-trace", usage = "Record a timeline of the run to this file, in the Chrome Trace Event format")
+    public File trace = null;
+
+    @Option(name = "-spill", usage = "Write each plugin to spill files in this directory as soon as it is built, "
+            + "so that memory use doesn't grow with the number of plugins. Implies no pretty printing")
+    public File spill = null;
+
+    @Option(name = "-resolveThreads", usage = "Threads resolving plugin artifacts and POMs from the Maven repository")
+    public int resolveThreads = 8;
+
+    @Option(name = "-wikiThreads", usage = "Threads looking up plugin pages on the wiki")
+    public int wikiThreads = 8;
+
+    @Option(name = "-wikiConnections", usage = "Maximum number of calls made to the wiki at once, or 0 for no limit")
+    public int wikiConnections = 4;
+
+    @Option(name = "-wikiRate", usage = "Maximum number of calls made to the wiki per second, or 0 for no limit")
+    public double wikiRate = 20;
+
+    @Option(name = "-jsonThreads", usage = "Threads computing the digests and JSON of plugins")
+    public int jsonThreads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "-inFlight", usage = "Maximum number of plugins being worked on at once")
+    public int inFlight = 32;
+
+    @Option(name = "-virtualThreads", usage = "Work on each plugin on a virtual thread of its own (on Java 21 and "
+            + "later), with the -*Threads options bounding how many are in each stage; allows a much larger -inFlight")
+    public boolean virtualThreads;
+
+    @Option(name = "-fragmentCache", usage = "Keep the JSON of each plugin in this directory, and reuse it in later "
+            + "runs when nothing it is computed from has changed")
+    public File fragmentCache = null;
+
+    @Option(name = "-publishManifest", usage = "List the files of -www and -download in this file, with their size, "
+            + "SHA-256 and change since the previous run, only hashing those whose size or modification time changed")
+    public File publishManifest = null;
+
+    @Option(name = "-syncTo", usage = "Make this directory a mirror of -www and -download, in sub-directories by the "
+            + "same names, by copying the files that changed and removing those that are gone since it was last synced")
+    public File syncTo = null;
+
+    @Option(name = "-blobStore", usage = "Keep downloaded artifacts once per contents in this directory, which must "
+            + "be on the same file system as the local repository and -download, and hard link them from there")
+    public File blobStore = null;
+
+    @Option(name = "-gcBlobStore", usage = "At the end, remove the blobs of -blobStore that nothing links to anymore")
+    public boolean gcBlobStore;
+
+    @Option(name = "-prefetchDepth", usage = "Resolve the artifacts of this many plugins ahead of the ones being "
+            + "worked on in the background, or 0 not to")
+    public int prefetchDepth = 16;
+
+    @Option(name = "-prefetchThreads", usage = "Threads resolving artifacts ahead of time")
+    public int prefetchThreads = 4;
+
+    /**
+     * Prefetches that can wait for a thread, per plugin of -prefetchDepth, enough for most plugins' releases.
+     */
+    private static final int PREFETCH_QUEUE = 64;
+
+    /**
+     * Wiki pages the -spill mode keeps while writing the release history, which only needs their titles and URLs.
+     */
+    private static final int RELEASE_HISTORY_WIKI_CACHE = 16;
+
+    /**
+     * Where the plugins go in the -spill mode.
+     */
+    private PluginSpill spilled;
+
+    /**
+     * Canonical forms of the plugins, for signing, when they are kept in memory.
+     */
+    private CanonicalPlugins canonicalPlugins;
+
     public static final String EOL = System.getProperty("line.separator");
 
     public static void main(String[] args) throws Exception {
@@ -168,6 +275,10 @@ public class Main {
             p.parseArgument(args);
 
             if (www != null) {
+                if (stageWww) {
+                    stagedWww = new StagedTree(www);
+                    www = stagedWww.begin();
+                }
                 prepareStandardDirectoryLayout();
             }
 
@@ -189,31 +300,119 @@ public class Main {
     }
 
     public void run() throws Exception {
+        long started = System.nanoTime();
+        boolean success = false;
+        if (trace != null) {
+            Tracer.start();
+        }
+        try {
+            MavenRepository repo = new InstrumentedMavenRepository(createRepository(repoImpl));
+            if (!repo.isThreadSafe() && (resolveThreads > 1 || prefetchDepth > 0)) {
+                System.out.println("The repository can't resolve from several threads, resolving one at a time");
+                resolveThreads = 1;
+                prefetchDepth = 0;
+            }
+            if (prefetchDepth > 0) {
+                repo = new PrefetchingMavenRepository(repo, prefetchThreads, PREFETCH_QUEUE * prefetchDepth);
+            }
+
+            PrintWriter latestRedirect = createHtaccessWriter();
+
+            if (spill != null) {
+                spilled = new PluginSpill(spill, privateKey != null);
+            } else if (privateKey != null) {
+                canonicalPlugins = new CanonicalPlugins();
+            }
 
-        MavenRepository repo = createRepository(repoImpl);
+            JSONObject ucRoot = buildUpdateCenterJson(repo, latestRedirect);
+            long start = System.nanoTime();
+            Tracer.Span span = Tracer.begin("write", output);
+            if (spilled != null) {
+                writeSpilled(ucRoot, output);
+            } else {
+                String uc = updateCenterPostCallJson(ucRoot);
+                writeToFile(uc, output);
+            }
+            span.end();
+            Metrics.phase("write", start);
 
-        PrintWriter latestRedirect = createHtaccessWriter();
+            if (spilled != null) {
+                // release history entries are written as they are built
+                Writer w = new BufferedWriter(new FileWriter(releaseHistory));
+                try {
+                    writeReleaseHistory(repo, w);
+                } finally {
+                    w.close();
+                }
+            } else {
+                JSONObject rhRoot = buildFullReleaseHistory(repo);
+                start = System.nanoTime();
+                span = Tracer.begin("write", releaseHistory);
+                String rh = prettyPrintJson(rhRoot);
+                writeToFile(rh, releaseHistory);
+                span.end();
+                Metrics.phase("write", start);
+            }
 
-        JSONObject ucRoot = buildUpdateCenterJson(repo, latestRedirect);
-        String uc = updateCenterPostCallJson(ucRoot);
-        writeToFile(uc, output);
+            latestRedirect.close();
 
-        JSONObject rhRoot = buildFullReleaseHistory(repo);
-        String rh = prettyPrintJson(rhRoot);
-        writeToFile(rh, releaseHistory);
+            if (stagedWww != null) {
+                stagedWww.commit();
+            }
+            if (publishManifest != null || syncTo != null) {
+                publish();
+            }
 
-        latestRedirect.close();
+            if (blobStore != null && gcBlobStore) {
+                start = System.nanoTime();
+                System.out.println("Removed " + new BlobStore(blobStore).gc() + " unused blobs");
+                Metrics.phase("gc", start);
+            }
+            success = true;
+        } finally {
+            if (spilled != null) {
+                spilled.close();
+                spilled = null;
+            }
+            canonicalPlugins = null;
+            if (metrics != null) {
+                Metrics.gauge(Metrics.RUN_SECONDS).set((System.nanoTime() - started) / 1e9);
+                Metrics.gauge(Metrics.RUN_SUCCESS).set(success ? 1 : 0);
+                Metrics.gauge(Metrics.RUN_TIMESTAMP).set(System.currentTimeMillis() / 1000);
+                Metrics.writeTo(metrics);
+            }
+            if (trace != null) {
+                Tracer.writeTo(trace);
+            }
+        }
     }
 
     String updateCenterPostCallJson(JSONObject ucRoot) {
         return "updateCenter.post(" + EOL + prettyPrintJson(ucRoot) + EOL + ");";
     }
 
+    /**
+     * Like {@link #updateCenterPostCallJson(JSONObject)}, but streams the spilled plugins into the file.
+     */
+    private void writeSpilled(JSONObject ucRoot, File file) throws IOException {
+        Writer w = new BufferedWriter(new FileWriter(file));
+        try {
+            w.write("updateCenter.post(" + EOL);
+            spilled.writeInto(ucRoot.toString(), w);
+            w.write(EOL + ");");
+        } finally {
+            w.close();
+        }
+    }
+
     private PrintWriter createHtaccessWriter() throws IOException {
         File p = htaccess.getParentFile();
         if (p != null) {
             p.mkdirs();
         }
+        if (redirectMap != null || nginxMap != null) {
+            return new PrintWriter(new RedirectMap(new FileWriter(htaccess), redirectMap, nginxMap), true);
+        }
         return new PrintWriter(new FileWriter(htaccess), true);
     }
 
@@ -255,9 +454,15 @@ public class Main {
         MavenRepository repo;
         DefaultMavenRepositoryBuilder repoBuilder = new DefaultMavenRepositoryBuilder(repoImpl)
                 .withMaxPlugins(maxPlugins);
+        if (StringUtils.isNotBlank(repoUrl)) {
+            repoBuilder.withRepositoryUrl(repoUrl);
+        }
         if (StringUtils.isNotBlank(repoUser)) {
             repoBuilder.withCredentials(repoUser, repoPass);
         }
+        if (blobStore != null) {
+            repoBuilder.withBlobStore(new BlobStore(blobStore));
+        }
         repo = repoBuilder.getInstance();
         if (cap != null) {
             repo = new VersionCappedMavenRepository(repo, new VersionNumber(cap));
@@ -265,12 +470,27 @@ public class Main {
         return repo;
     }
 
+    /**
+     * Connects to the wiki that provides plugin pages and labels.
+     */
+    protected ConfluencePluginList createPluginList() throws Exception {
+        return new ConfluencePluginList();
+    }
+
+    private ConfluencePluginList openPluginList() throws Exception {
+        ConfluencePluginList cpl = createPluginList();
+        cpl.setLimits(wikiConnections, wikiRate);
+        return cpl;
+    }
+
     /**
      * Generates a canonicalized JSON format of the given object, and put the signature in it. Because it mutates the
      * signed object itself, validating the signature needs a bit of work, but this enables a signature to be added
      * transparently.
      */
     protected void sign(JSONObject o) throws GeneralSecurityException, IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("sign", null);
         JSONObject sign = new JSONObject();
 
         List<X509Certificate> certs = getCertificateChain();
@@ -287,7 +507,7 @@ public class Main {
         // first, backward compatible signature for <1.433 Jenkins that forgets to flush the stream.
         // we generate this in the original names that those Jenkins understands.
         SignatureGenerator sg = new SignatureGenerator(signer, key);
-        o.writeCanonical(new OutputStreamWriter(sg.getOut(), "UTF-8"));
+        writeCanonical(o, new OutputStreamWriter(sg.getOut(), "UTF-8"));
         sg.addRecord(sign, "");
 
         // then the correct signature, into names that don't collide.
@@ -297,7 +517,7 @@ public class Main {
         }
         try {
             sg = new SignatureGenerator(signer, key);
-            o.writeCanonical(new OutputStreamWriter(new TeeOutputStream(sg.getOut(), raw), "UTF-8")).close();
+            writeCanonical(o, new OutputStreamWriter(new TeeOutputStream(sg.getOut(), raw), "UTF-8")).close();
         } finally {
             IOUtils.closeQuietly(raw);
         }
@@ -311,6 +531,26 @@ public class Main {
         sign.put("certificates", a);
 
         o.put("signature", sign);
+        span.end();
+        Metrics.phase("sign", start);
+    }
+
+    /**
+     * Writes the canonical form of the update center, with the spilled plugins in it in the -spill mode, and with the
+     * canonical forms of the plugins computed as they were built otherwise.
+     */
+    private Writer writeCanonical(JSONObject o, Writer w) throws IOException {
+        if (spilled == null) {
+            if (canonicalPlugins != null && o.has("plugins")
+                    && o.getJSONObject("plugins").size() == canonicalPlugins.size()) {
+                return canonicalPlugins.writeInto(o, w);
+            }
+            return o.writeCanonical(w);
+        }
+        StringWriter document = new StringWriter();
+        o.writeCanonical(document);
+        spilled.writeCanonicalInto(document.toString(), w);
+        return w;
     }
 
     /**
@@ -403,85 +643,328 @@ public class Main {
 
     /**
      * Build JSON for the plugin list.
+     * <p/>
+     * Plugins go through a {@link Pipeline}: artifacts and POMs are resolved, then the wiki is looked up, then the
+     * JSON is computed, each on threads of its own, and the results are written out in the order of discovery.
      *
      * @param repository
      * @param redirect
      */
-    protected JSONObject buildPlugins(MavenRepository repository, PrintWriter redirect) throws Exception {
-        SAXReader saxReader = createXmlReader();
-        ConfluencePluginList cpl = new ConfluencePluginList();
+    protected JSONObject buildPlugins(final MavenRepository repository, final PrintWriter redirect) throws Exception {
+        final ConfluencePluginList cpl = openPluginList();
+        // each page is only needed from when it is prefetched until its plugin is through the wiki stage
+        cpl.setCacheSize(2 * (inFlight + prefetchDepth));
+        final FragmentCache fragments = fragmentCache != null ? new FragmentCache(fragmentCache) : null;
+
+        final JSONObject plugins = new JSONObject();
+        final AtomicInteger total = new AtomicInteger();
+
+        // the jobs are only created as the pipeline takes them, so that a plugin is forgotten once it is written
+        List<PluginHistory> histories = new ArrayList<PluginHistory>(repository.listHudsonPlugins());
+
+        new Pipeline<PluginJob>(inFlight)
+                .perJob(virtualThreads)
+                .stage("resolve", resolveThreads, new Pipeline.Stage<PluginJob>() {
+                    public void process(PluginJob job) throws Exception {
+                        resolve(repository, job);
+                        prefetchPage(job, cpl);
+                    }
+                })
+                .stage("wiki", wikiThreads, new Pipeline.Stage<PluginJob>() {
+                    public void process(PluginJob job) throws Exception {
+                        job.wikiPage = findPage(job.hpi.artifactId, job.pomDoc, cpl);
+                        job.labels = readLabels(job.wikiPage, cpl);
+                    }
+                })
+                .stage("json", jsonThreads, new Pipeline.Stage<PluginJob>() {
+                    public void process(PluginJob job) throws Exception {
+                        String fingerprint = null;
+                        boolean cached = false;
+                        if (fragments != null) {
+                            fingerprint = fingerprint(job);
+                            job.json = fragments.get(fingerprint);
+                            cached = job.json != null;
+                            Metrics.cache("jsonFragment", cached);
+                        }
+                        if (!cached) {
+                            Plugin plugin = new Plugin(job.hpi.artifactId, job.latest, job.previous, job.pomDoc,
+                                    job.parentPom, job.wikiPage, job.labels);
+                            if (plugin.isDeprecated()) {
+                                return;
+                            }
+                            long start = System.nanoTime();
+                            job.json = plugin.toJSON();
+                            Metrics.phase("toJson", start);
+                            if (fragments != null) {
+                                fragments.put(fingerprint, job.json);
+                            }
+                        }
+                        if (privateKey != null) {
+                            job.canonical = cached ? fragments.getCanonical(fingerprint) : null;
+                            if (job.canonical == null) {
+                                job.canonical = CanonicalPlugins.entry(job.hpi.artifactId, job.json);
+                                if (fragments != null) {
+                                    fragments.putCanonical(fingerprint, job.canonical);
+                                }
+                            }
+                        }
+                    }
+                })
+                .run(jobs(repository, cpl, histories), new Pipeline.Sink<PluginJob>() {
+                    public void accept(PluginJob job, Exception failure) throws Exception {
+                        if (failure instanceof IOException) {
+                            failure.printStackTrace();
+                            return; // move on to the next plugin
+                        }
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        Tracer.Span span = Tracer.begin("output", job);
+                        try {
+                            write(job, plugins, redirect);
+                            total.incrementAndGet();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                            // move on to the next plugin
+                        } finally {
+                            span.end();
+                        }
+                    }
+                });
 
-        int total = 0;
+        System.out.println("Total " + total + " plugins listed.");
+        return plugins;
+    }
 
-        JSONObject plugins = new JSONObject();
-        for (PluginHistory hpi : repository.listHudsonPlugins()) {
-            try {
-                System.out.println(hpi.artifactId);
-                List<HPI> versions = new ArrayList<HPI>(hpi.artifacts.values());
-                HPI latest = versions.get(0);
-                latest.file = repository.resolve(latest.artifact);
-                HPI previous = versions.size() > 1 ? versions.get(1) : null;
-                if (previous != null) {
-                    previous.file = repository.resolve(previous.artifact);
-                }
+    /**
+     * Resolves the artifacts and POMs of a plugin.
+     */
+    private void resolve(MavenRepository repository, PluginJob job) throws IOException {
+        System.out.println(job.hpi.artifactId);
+        job.versions = job.hpi.getVersions();
+        job.latest = job.versions.get(0);
+        job.latest.file = repository.resolve(job.latest.artifact);
+        job.previous = job.versions.size() > 1 ? job.versions.get(1) : null;
+        if (job.previous != null) {
+            job.previous.file = repository.resolve(job.previous.artifact);
+        }
 
-                Document pomDoc = null;
-                Document parentPom = null;
-                File pomFile = repository.resolvePOM(latest.artifact);
-                if (pomFile != null) {
-                    pomDoc = readPOM(saxReader, pomFile);
-                }
-                if (pomDoc != null) {
-                    parentPom = resolveParentPom(repository, latest.artifact, saxReader, pomDoc);
-                }
-                RemotePage hpiWikiPage = findPage(hpi.artifactId, pomDoc, cpl);
-
-                Plugin plugin = new Plugin(hpi.artifactId, latest, previous, pomDoc, parentPom, hpiWikiPage,
-                        readLabels(hpiWikiPage, cpl));
-                checkLatestDate(repository, versions, latest);
-                if (plugin.isDeprecated()) {
-                    System.out.println("=> Plugin is deprecated.. skipping.");
-                    continue;
-                }
+        SAXReader saxReader = createXmlReader();
+        job.pomFile = repository.resolvePOM(job.latest.artifact);
+        if (job.pomFile != null) {
+            job.pomDoc = readPOM(saxReader, job.pomFile);
+        }
+        if (job.pomDoc != null) {
+            job.parentPomFile = resolveParentPomFile(repository, job.latest.artifact, job.pomDoc);
+            if (job.parentPomFile != null) {
+                job.parentPom = readPOM(saxReader, job.parentPomFile);
+            }
+        }
+        checkLatestDate(repository, job.versions, job.latest);
+    }
 
-                System.out.println(
-                        plugin.page != null ? "=> " + plugin.page.getTitle() : "** No wiki page found");
-                JSONObject json = plugin.toJSON();
-                System.out.println("=> " + json);
-                plugins.put(plugin.artifactId, json);
-                String permalink = String.format("/latest/%s.hpi", plugin.artifactId);
-                redirect.printf("Redirect 302 %s %s\n", permalink, plugin.latest.getURL().getPath());
-
-                if (download != null) {
-                    for (HPI v : hpi.artifacts.values()) {
-                        stage(v, new File(download,
-                                "plugins/" + hpi.artifactId + "/" + v.version + "/" + hpi.artifactId + ".hpi"));
+    /**
+     * Writes the -publishManifest and synchronizes -syncTo.
+     */
+    private void publish() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Map<String, File> trees = new TreeMap<String, File>();
+        if (www != null) {
+            trees.put("www", www);
+        }
+        if (download != null) {
+            trees.put("download", download);
+        }
+        // what the mirror has is as good a previous manifest as any, since it keeps the sizes and times of the trees
+        PublishManifest manifest = PublishManifest.scan(trees,
+                publishManifest != null ? publishManifest : new File(syncTo, PublishManifest.MIRROR_MANIFEST));
+        if (publishManifest != null) {
+            manifest.write(publishManifest);
+        }
+        Metrics.phase("manifest", start);
+        if (syncTo != null) {
+            System.out.println("Synchronized " + manifest.syncTo(syncTo) + " files to " + syncTo);
+        }
+    }
+
+    /**
+     * Creates the job of each plugin as it is started on, having the artifacts of the next -prefetchDepth plugins
+     * resolved in the background, if the repository can, and the wiki pages of those that have an override fetched.
+     */
+    private Iterable<PluginJob> jobs(MavenRepository repository, final ConfluencePluginList cpl,
+                                     final List<PluginHistory> histories) {
+        final PrefetchingMavenRepository prefetcher = repository instanceof PrefetchingMavenRepository
+                ? (PrefetchingMavenRepository) repository : null;
+        return new Iterable<PluginJob>() {
+            public Iterator<PluginJob> iterator() {
+                return new Iterator<PluginJob>() {
+                    private int next;
+                    private int prefetched;
+
+                    public boolean hasNext() {
+                        return next < histories.size();
                     }
-                    if (!hpi.artifacts.isEmpty()) {
-                        createLatestSymlink(hpi, plugin.latest);
+
+                    public PluginJob next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        prefetched = Math.max(prefetched, next + 1);
+                        for (; prefetched < Math.min(histories.size(), next + 1 + prefetchDepth); prefetched++) {
+                            PluginHistory hpi = histories.get(prefetched);
+                            if (prefetcher != null) {
+                                prefetcher.prefetch(hpi);
+                            }
+                            String override = Plugin.OVERRIDES.getProperty(hpi.artifactId);
+                            if (override != null) {
+                                cpl.prefetch(override);
+                            }
+                        }
+                        return new PluginJob(histories.get(next++));
                     }
-                }
 
-                if (www != null) {
-                    buildIndex(new File(www, "download/plugins/" + hpi.artifactId), hpi.artifactId,
-                            hpi.artifacts.values(), permalink);
-                }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
 
-                total++;
-            } catch (IOException e) {
-                e.printStackTrace();
-                // move on to the next plugin
+    /**
+     * Starts fetching the wiki page {@link #findPage} will find for a plugin, unless it was prefetched with its
+     * artifacts, so that it is there by the time the plugin reaches the wiki stage.
+     */
+    private void prefetchPage(PluginJob job, ConfluencePluginList cpl) {
+        String override = Plugin.OVERRIDES.getProperty(job.hpi.artifactId);
+        if (override != null) {
+            if (prefetchDepth <= 0) {
+                cpl.prefetch(override); // not prefetched ahead with the artifacts
             }
+            return;
         }
+        String url = job.pomDoc != null ? selectSingleValue(job.pomDoc, "/project/url") : null;
+        if (url != null && cpl.isPageUrl(url)) {
+            cpl.prefetch(url);
+        } else {
+            cpl.prefetchNearest(job.hpi.artifactId);
+        }
+    }
 
-        System.out.println("Total " + total + " plugins listed.");
-        return plugins;
+    /**
+     * Everything the JSON of a plugin is computed from, for the {@link FragmentCache}. Files in the local repository
+     * are identified by their size and modification time rather than read again.
+     */
+    private static String fingerprint(PluginJob job) throws IOException {
+        FragmentCache.Fingerprint f = new FragmentCache.Fingerprint();
+        f.add(FRAGMENT_FORMAT).add(job.hpi.artifactId);
+        for (HPI h : new HPI[]{job.latest, job.previous}) {
+            if (h == null) {
+                f.add(null);
+            } else {
+                f.add(h.artifact.repository).add(h.artifact).addStat(h.file);
+            }
+        }
+        f.addContents(job.pomFile).addContents(job.parentPomFile);
+        if (job.wikiPage == null) {
+            f.add(null);
+        } else {
+            f.add(job.wikiPage.getId()).add(job.wikiPage.getVersion()).add(job.wikiPage.getUrl())
+                    .add(job.wikiPage.getTitle());
+        }
+        for (String label : job.labels) {
+            f.add(label);
+        }
+        f.add(null).add(Plugin.OVERRIDES.getProperty(job.hpi.artifactId));
+        return f.toString();
+    }
+
+    /**
+     * Changed whenever {@link Plugin#toJSON()} produces something different from the same inputs, so that the
+     * fragments cached by older versions aren't used.
+     */
+    private static final String FRAGMENT_FORMAT = "1";
+
+    /**
+     * Writes out a plugin that went through the pipeline.
+     */
+    private void write(PluginJob job, JSONObject plugins, PrintWriter redirect)
+            throws IOException, InterruptedException {
+        PluginHistory hpi = job.hpi;
+        if (job.json == null) {
+            System.out.println(hpi.artifactId + " => Plugin is deprecated.. skipping.");
+            return;
+        }
+
+        System.out.println(
+                hpi.artifactId + (job.wikiPage != null ? " => " + job.wikiPage.getTitle() : " ** No wiki page found"));
+        JSONObject json = job.json;
+        if (spilled != null) {
+            spilled.add(hpi.artifactId, json, job.canonical);
+        } else {
+            plugins.put(hpi.artifactId, json);
+            if (canonicalPlugins != null) {
+                canonicalPlugins.add(hpi.artifactId, job.canonical);
+            }
+        }
+        String permalink = String.format("/latest/%s.hpi", hpi.artifactId);
+        redirect.printf("Redirect 302 %s %s\n", permalink, job.latest.getURL().getPath());
+
+        if (download != null) {
+            for (HPI v : job.versions) {
+                stage(v, new File(download,
+                        "plugins/" + hpi.artifactId + "/" + v.version + "/" + hpi.artifactId + ".hpi"));
+            }
+            if (!job.versions.isEmpty()) {
+                createLatestSymlink(hpi, job.latest);
+            }
+        }
+
+        if (www != null) {
+            buildIndex(new File(www, "download/plugins/" + hpi.artifactId), hpi.artifactId, job.versions, permalink);
+        }
+
+        Metrics.counter(Metrics.PLUGINS).increment();
+    }
+
+    /**
+     * What is known about a plugin on its way through the {@link Pipeline} of {@link #buildPlugins}.
+     */
+    private static final class PluginJob {
+        final PluginHistory hpi;
+        List<HPI> versions;
+        HPI latest;
+        HPI previous;
+        File pomFile;
+        Document pomDoc;
+        File parentPomFile;
+        Document parentPom;
+        RemotePage wikiPage;
+        String[] labels;
+        /**
+         * Null for a deprecated plugin.
+         */
+        JSONObject json;
+        /**
+         * {@link CanonicalPlugins#entry(String, JSONObject)} of the plugin, when signing.
+         */
+        String canonical;
+
+        PluginJob(PluginHistory hpi) {
+            this.hpi = hpi;
+        }
+
+        @Override
+        public String toString() {
+            return hpi.artifactId;
+        }
     }
 
     /**
      * Generates symlink to the latest version.
      */
     protected void createLatestSymlink(PluginHistory hpi, HPI latest) throws InterruptedException, IOException {
+        long start = System.nanoTime();
         File dir = new File(download, "plugins/" + hpi.artifactId);
         new File(dir, "latest").delete();
 
@@ -489,6 +972,7 @@ public class Main {
         pb.command("ln", "-s", latest.version, "latest");
         pb.directory(dir);
         int r = pb.start().waitFor();
+        Metrics.phase("staging", start);
         if (r != 0) {
             throw new IOException("ln failed: " + r);
         }
@@ -498,6 +982,7 @@ public class Main {
      * Stages an artifact into the specified location.
      */
     protected void stage(MavenArtifact a, File dst) throws IOException, InterruptedException {
+        long start = System.nanoTime();
         File src = a.file;
         if (dst.exists() && dst.lastModified() == src.lastModified() && dst.length() == src.length()) {
             return;   // already up to date
@@ -511,10 +996,11 @@ public class Main {
 
         ProcessBuilder pb = new ProcessBuilder();
         pb.command("ln", "-f", src.getAbsolutePath(), dst.getAbsolutePath());
-        if (pb.start().waitFor() != 0) {
+        int r = pb.start().waitFor();
+        Metrics.phase("staging", start);
+        if (r != 0) {
             throw new IOException("ln failed");
         }
-
     }
 
     /**
@@ -530,65 +1016,116 @@ public class Main {
 
     protected JSONArray buildReleaseHistory(MavenRepository repository) throws Exception {
         SAXReader saxReader = createXmlReader();
-        ConfluencePluginList cpl = new ConfluencePluginList();
+        ConfluencePluginList cpl = openPluginList();
 
         JSONArray releaseHistory = new JSONArray();
         for (Map.Entry<Date, Map<String, HPI>> relsOnDate : repository.listHudsonPluginsByReleaseDate().entrySet()) {
-            String relDate = MavenArtifact.getDateFormat().format(relsOnDate.getKey());
-            System.out.println("Releases on " + relDate);
+            releaseHistory.add(
+                    buildReleases(repository, relsOnDate.getKey(), relsOnDate.getValue(), saxReader, cpl, null));
+        }
 
-            JSONArray releases = new JSONArray();
+        return releaseHistory;
+    }
 
-            for (Map.Entry<String, HPI> rel : relsOnDate.getValue().entrySet()) {
-                HPI h = rel.getValue();
-                JSONObject o = new JSONObject();
-                try {
-                    Document pomDoc = null;
-                    Document parentPom = null;
-                    File pomFile = repository.resolvePOM(h.artifact);
-                    if (pomFile != null) {
-                        pomDoc = readPOM(saxReader, pomFile);
-                    }
-                    if (pomDoc != null) {
-                        parentPom = resolveParentPom(repository, h.artifact, saxReader, pomDoc);
-                    }
-                    RemotePage hpiWikiPage = findPage(h.artifact.artifactId, pomDoc, cpl);
-                    Plugin plugin = new Plugin(h, pomDoc, parentPom, hpiWikiPage, readLabels(hpiWikiPage, cpl));
-                    h.file = repository.resolve(h.artifact);
-                    String title = plugin.getTitle();
-                    if ((title == null) || (title.equals(""))) {
-                        title = h.artifact.artifactId;
-                    }
+    /**
+     * Writes the JSON of {@link #buildFullReleaseHistory(MavenRepository)} one release date at a time, so that only the
+     * coordinates of the releases are kept in memory. Of the wiki pages, only the titles and URLs the releases show are
+     * kept; the pages themselves are only cached for the few releases in a row that share them.
+     */
+    protected void writeReleaseHistory(MavenRepository repository, Writer w) throws Exception {
+        SAXReader saxReader = createXmlReader();
+        ConfluencePluginList cpl = openPluginList();
+        cpl.setCacheSize(RELEASE_HISTORY_WIKI_CACHE);
+        Map<String, RemotePage> wikiPages = new HashMap<String, RemotePage>();
+
+        w.write("{\"releaseHistory\":[");
+        boolean first = true;
+        for (Map.Entry<Date, Map<String, GenericArtifactInfo>> relsOnDate
+                : repository.listPluginArtifactsByReleaseDate().entrySet()) {
+            Map<String, HPI> rels = new TreeMap<String, HPI>();
+            for (Map.Entry<String, GenericArtifactInfo> rel : relsOnDate.getValue().entrySet()) {
+                rels.put(rel.getKey(), new HPI(rel.getValue()));
+            }
+            if (!first) {
+                w.write(',');
+            }
+            first = false;
+            w.write(buildReleases(repository, relsOnDate.getKey(), rels, saxReader, cpl, wikiPages).toString());
+        }
+        w.write("]}");
+    }
+
+    /**
+     * Builds the JSON of the plugins released on the given date.
+     *
+     * @param wikiPages
+     *      if not null, where to remember the titles and URLs of the wiki pages instead of the pages themselves.
+     */
+    private JSONObject buildReleases(MavenRepository repository, Date date, Map<String, HPI> rels,
+            SAXReader saxReader, ConfluencePluginList cpl, Map<String, RemotePage> wikiPages) throws Exception {
+        String relDate = MavenArtifact.getDateFormat().format(date);
+        System.out.println("Releases on " + relDate);
+
+        JSONArray releases = new JSONArray();
 
-                    o.put("title", title);
-                    o.put("gav", h.artifact.groupId + ':' + h.artifact.artifactId + ':' + h.artifact.version);
-                    o.put("timestamp", h.getTimestamp());
-                    o.put("wiki", plugin.getWiki());
-                    o.put("version", h.version);
-                    System.out.println("\t" + title + ":" + h.version);
-                } catch (IOException e) {
-                    System.out.println("Failed to resolve plugin " + h.artifact.artifactId + " so using defaults");
-                    o.put("title", h.artifact.artifactId);
-                    o.put("wiki", "");
-                    o.put("version", h.version);
+        for (Map.Entry<String, HPI> rel : rels.entrySet()) {
+            HPI h = rel.getValue();
+            JSONObject o = new JSONObject();
+            Tracer.Span span = Tracer.begin("release", h.artifact);
+            try {
+                Document pomDoc = null;
+                Document parentPom = null;
+                File pomFile = repository.resolvePOM(h.artifact);
+                if (pomFile != null) {
+                    pomDoc = readPOM(saxReader, pomFile);
+                }
+                if (pomDoc != null) {
+                    parentPom = resolveParentPom(repository, h.artifact, saxReader, pomDoc);
                 }
-                releases.add(o);
+                Plugin plugin;
+                if (wikiPages != null) {
+                    // the labels only make a difference to what the release history leaves out
+                    RemotePage hpiWikiPage = findPageSummary(h.artifact.artifactId, pomDoc, cpl, wikiPages);
+                    plugin = new Plugin(h, pomDoc, parentPom, hpiWikiPage, new String[0]);
+                } else {
+                    RemotePage hpiWikiPage = findPage(h.artifact.artifactId, pomDoc, cpl);
+                    plugin = new Plugin(h, pomDoc, parentPom, hpiWikiPage, readLabels(hpiWikiPage, cpl));
+                }
+                h.file = repository.resolve(h.artifact);
+                String title = plugin.getTitle();
+                if ((title == null) || (title.equals(""))) {
+                    title = h.artifact.artifactId;
+                }
+
+                o.put("title", title);
+                o.put("gav", h.artifact.groupId + ':' + h.artifact.artifactId + ':' + h.artifact.version);
+                o.put("timestamp", h.getTimestamp());
+                o.put("wiki", plugin.getWiki());
+                o.put("version", h.version);
+                System.out.println("\t" + title + ":" + h.version);
+            } catch (IOException e) {
+                System.out.println("Failed to resolve plugin " + h.artifact.artifactId + " so using defaults");
+                o.put("title", h.artifact.artifactId);
+                o.put("wiki", "");
+                o.put("version", h.version);
+            } finally {
+                span.end();
             }
-            JSONObject d = new JSONObject();
-            d.put("date", relDate);
-            d.put("releases", releases);
-            releaseHistory.add(d);
+            releases.add(o);
         }
-
-        return releaseHistory;
+        JSONObject d = new JSONObject();
+        d.put("date", relDate);
+        d.put("releases", releases);
+        return d;
     }
 
     private void buildIndex(File dir, String title, Collection<? extends MavenArtifact> versions, String permalink)
             throws IOException {
+        long start = System.nanoTime();
         List<MavenArtifact> list = new ArrayList<MavenArtifact>(versions);
         Collections.sort(list, new Comparator<MavenArtifact>() {
             public int compare(MavenArtifact o1, MavenArtifact o2) {
-                return -o1.getVersion().compareTo(o2.getVersion());
+                return o2.getVersionKey().compareTo(o1.getVersionKey());
             }
         });
 
@@ -598,6 +1135,7 @@ public class Main {
             index.add(a);
         }
         index.close();
+        Metrics.phase("staging", start);
     }
 
     /**
@@ -620,7 +1158,7 @@ public class Main {
      * @return the JSON for the core Jenkins
      */
     protected JSONObject buildCore(MavenRepository repository, PrintWriter redirect) throws Exception {
-        TreeMap<VersionNumber, HudsonWar> wars = repository.getHudsonWar();
+        TreeMap<VersionKey, HudsonWar> wars = repository.getHudsonWar();
         if (wars.isEmpty()) {
             return null;
         }
@@ -628,7 +1166,7 @@ public class Main {
         HudsonWar latest = wars.get(wars.firstKey());
         latest.file = repository.resolve(latest.artifact);
         JSONObject core = latest.toJSON("core");
-        System.out.println("core\n=> " + core);
+        System.out.println("core => " + latest.getVersion());
 
         redirect.printf("Redirect 302 /latest/jenkins.war %s\n", latest.getURL().getPath());
         redirect.printf(
@@ -648,6 +1186,9 @@ public class Main {
         if (download != null) {
             // build the download server layout
             for (HudsonWar w : wars.values()) {
+                if (w.file == null) {
+                    w.file = repository.resolve(w.artifact); // only the latest is resolved above
+                }
                 stage(w, new File(download, "war/" + w.version + "/" + w.getFileName()));
             }
         }
@@ -660,16 +1201,52 @@ public class Main {
     }
 
     private Document readPOM(SAXReader xmlReader, File pom) throws IOException {
+        long start = System.nanoTime();
+        Tracer.Span span = Tracer.begin("readPOM", pom);
         try {
             return xmlReader.read(pom);
         } catch (DocumentException e) {
             System.err.println("** Can't parse POM " + pom);
             e.printStackTrace();
             return null;
+        } finally {
+            span.end();
+            Metrics.phase("pomParse", start);
         }
     }
 
     private RemotePage findPage(String artifactId, Document pomDoc, ConfluencePluginList cpl) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return lookupPage(artifactId, pomDoc, cpl);
+        } finally {
+            Metrics.phase("wiki", start);
+        }
+    }
+
+    /**
+     * Like {@link #findPage}, but returns a page with only the title and URL, remembered for the next versions of the
+     * plugin. A page that wasn't found is looked up again, as {@link #findPage} may have failed on the way.
+     */
+    private RemotePage findPageSummary(String artifactId, Document pomDoc, ConfluencePluginList cpl,
+            Map<String, RemotePage> summaries) throws IOException {
+        String key = artifactId + ' ' + (pomDoc != null ? selectSingleValue(pomDoc, "/project/url") : null);
+        RemotePage summary = summaries.get(key);
+        if (summary == null) {
+            RemotePage page = findPage(artifactId, pomDoc, cpl);
+            if (page == null) {
+                return null;
+            }
+            summary = new RemotePage();
+            summary.setTitle(page.getTitle());
+            summary.setUrl(page.getUrl());
+            summaries.put(key, summary);
+        }
+        return summary;
+    }
+
+    private RemotePage lookupPage(String artifactId, Document pomDoc, ConfluencePluginList cpl)
+            throws IOException {
         try {
             String p = Plugin.OVERRIDES.getProperty(artifactId);
             if (p != null) {
@@ -720,11 +1297,14 @@ public class Main {
 
     private String[] readLabels(RemotePage wikiPage, ConfluencePluginList cpl) {
         if (wikiPage != null) {
+            long start = System.nanoTime();
             try {
                 return cpl.getLabels(wikiPage);
             } catch (RemoteException e) {
                 System.err.println("Failed to fetch labels for " + wikiPage.getUrl());
                 e.printStackTrace();
+            } finally {
+                Metrics.phase("wiki", start);
             }
         }
         return new String[0];
@@ -740,16 +1320,22 @@ public class Main {
     private Document resolveParentPom(MavenRepository repository, GenericArtifactInfo childArtifact,
             SAXReader saxReader, Document pomDoc)
             throws IOException {
+        File parentPomFile = resolveParentPomFile(repository, childArtifact, pomDoc);
+        if (parentPomFile != null) {
+            return readPOM(saxReader, parentPomFile);
+        }
+        return null;
+    }
+
+    private File resolveParentPomFile(MavenRepository repository, GenericArtifactInfo childArtifact, Document pomDoc)
+            throws IOException {
         Element parent = (Element) selectSingleNode(pomDoc, "/project/parent");
         if (parent != null) {
-            File parentPomFile = repository.resolve(new GenericArtifactInfo(childArtifact.repository,
+            return repository.resolve(new GenericArtifactInfo(childArtifact.repository,
                     parent.element("groupId").getTextTrim(),
                     parent.element("artifactId").getTextTrim(),
                     parent.element("version").getTextTrim(),
                     ""), "pom", null);
-            if (parentPomFile != null) {
-                return readPOM(saxReader, parentPomFile);
-            }
         }
         return null;
     }
@@ -0,0 +1,233 @@
+package org.jenkins_ci.update_center;
+
+import org.jenkins_ci.update_center.metrics.Tracer;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs jobs through a sequence of stages, each with its own pool of threads sized for what it waits on, and hands
+ * them to a sink on the calling thread in the order they came in.
+ * <p/>
+ * So while one job waits for the network in a stage, the previous ones can use the CPU in the next stage. At most
+ * {@code inFlight} jobs are in the pipeline at once: when the oldest isn't done yet, no new job is taken until it is,
+ * which bounds memory use and keeps the output in order.
+ * <p/>
+ * With {@link #perJob(boolean)}, each job instead runs through all the stages on a thread of its own, a virtual thread
+ * where the JVM has them, and the threads of a stage only bound how many jobs are in it at once. Since the stages are
+ * mostly blocking calls to one remote service each, this lets thousands of jobs be in flight cheaply.
+ */
+public class Pipeline<T> {
+    public interface Stage<T> {
+        void process(T job) throws Exception;
+    }
+
+    public interface Sink<T> {
+        /**
+         * @param failure What a stage threw for this job, in which case the following stages were skipped, or null.
+         */
+        void accept(T job, Exception failure) throws Exception;
+    }
+
+    private final int inFlight;
+    private final List<String> names = new ArrayList<String>();
+    private final List<Stage<T>> stages = new ArrayList<Stage<T>>();
+    private final List<Integer> threads = new ArrayList<Integer>();
+    private boolean perJob;
+
+    public Pipeline(int inFlight) {
+        if (inFlight < 1) {
+            throw new IllegalArgumentException("At least one job must be in flight");
+        }
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Adds a stage after the ones added so far.
+     */
+    public Pipeline<T> stage(String name, int threads, Stage<T> stage) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The " + name + " stage needs at least one thread");
+        }
+        this.names.add(name);
+        this.stages.add(stage);
+        this.threads.add(threads);
+        return this;
+    }
+
+    /**
+     * Whether to run each job on a thread of its own rather than on a pool of threads per stage.
+     */
+    public Pipeline<T> perJob(boolean perJob) {
+        this.perJob = perJob;
+        return this;
+    }
+
+    /**
+     * Runs all the jobs through the stages and then the sink, and returns when they are all done.
+     */
+    public void run(Iterable<? extends T> jobs, Sink<? super T> sink) throws Exception {
+        List<ExecutorService> executors = new ArrayList<ExecutorService>();
+        try {
+            List<Semaphore> permits = new ArrayList<Semaphore>();
+            if (perJob) {
+                executors.add(newThreadPerJobExecutor());
+                for (int n : threads) {
+                    permits.add(new Semaphore(n, true));
+                }
+            } else {
+                for (int i = 0; i < stages.size(); i++) {
+                    executors.add(new ThreadPoolExecutor(threads.get(i), threads.get(i), 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(inFlight), new StageThreadFactory(names.get(i))));
+                }
+            }
+
+            LinkedList<Slot> window = new LinkedList<Slot>();
+            Iterator<? extends T> itr = jobs.iterator();
+            while (itr.hasNext() || !window.isEmpty()) {
+                if (itr.hasNext() && window.size() < inFlight) {
+                    Slot slot = perJob ? new PerJobSlot(itr.next(), permits) : new Slot(itr.next(), executors);
+                    window.add(slot);
+                    if (perJob) {
+                        executors.get(0).execute(slot);
+                    } else {
+                        slot.next();
+                    }
+                    continue;
+                }
+                Slot oldest = window.removeFirst();
+                oldest.done.await();
+                sink.accept(oldest.job, oldest.failure);
+            }
+        } finally {
+            for (ExecutorService e : executors) {
+                e.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per job, or a platform thread where the JVM has no virtual
+     * threads (before Java 21).
+     */
+    private static ExecutorService newThreadPerJobExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = Class.forName("java.lang.Thread$Builder$OfVirtual")
+                    .getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "job-", 1L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory f = (ThreadFactory) factory.invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, f);
+        } catch (Exception e) {
+            // not there before Java 21, or a preview feature that isn't enabled
+            System.out.println("No virtual threads on this JVM, using a platform thread per job: " + e);
+            return Executors.newCachedThreadPool(new StageThreadFactory("job"));
+        }
+    }
+
+    /**
+     * A job on its way through the stages.
+     */
+    private class Slot implements Runnable {
+        final T job;
+        final List<ExecutorService> executors;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Exception failure;
+        private int stage = -1;
+
+        Slot(T job, List<ExecutorService> executors) {
+            this.job = job;
+            this.executors = executors;
+        }
+
+        /**
+         * Hands the job to the next stage, or to the sink after the last one or a failure.
+         */
+        void next() {
+            stage++;
+            if (stage == stages.size() || failure != null) {
+                done.countDown();
+            } else {
+                executors.get(stage).execute(this);
+            }
+        }
+
+        public void run() {
+            process(stage);
+            next();
+        }
+
+        void process(int stage) {
+            Tracer.Span span = Tracer.begin(names.get(stage), job);
+            try {
+                stages.get(stage).process(job);
+            } catch (Exception e) {
+                failure = e;
+            } catch (Error e) {
+                failure = new RuntimeException(e);
+            } finally {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * A job running through all the stages on its own thread, waiting for a permit to enter each.
+     */
+    private final class PerJobSlot extends Slot {
+        private final List<Semaphore> permits;
+
+        PerJobSlot(T job, List<Semaphore> permits) {
+            super(job, null);
+            this.permits = permits;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < stages.size() && failure == null; i++) {
+                    Semaphore s = permits.get(i);
+                    s.acquire();
+                    try {
+                        process(i);
+                    } finally {
+                        s.release();
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private static final class StageThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        StageThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
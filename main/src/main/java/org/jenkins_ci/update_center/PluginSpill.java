@@ -0,0 +1,174 @@
+package org.jenkins_ci.update_center;
+
+import net.sf.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Plugin entries of the update center, written to disk as soon as each one is built so that memory use doesn't grow
+ * with the number of plugins, then streamed into the final document.
+ * <p/>
+ * Each entry is kept as {@link JSONObject#toString()} writes it, and optionally as
+ * {@link JSONObject#writeCanonical(Writer)} writes it, for signing. The final document is produced from one that has
+ * an empty "plugins" object, by writing the entries into it. Only the names and positions of the entries stay in
+ * memory.
+ */
+public class PluginSpill implements Closeable {
+    private static final String PLUGINS = "\"plugins\":{}";
+
+    private final List<String> names = new ArrayList<String>();
+    private final Fragments json;
+    private final Fragments canonical;
+
+    /**
+     * @param canonical Whether to also keep the canonical form, as needed to sign the document.
+     */
+    public PluginSpill(File dir, boolean canonical) throws IOException {
+        dir.mkdirs();
+        this.json = new Fragments(File.createTempFile("plugins", ".json", dir));
+        this.canonical = canonical ? new Fragments(File.createTempFile("plugins", ".canonical", dir)) : null;
+    }
+
+    public void add(String name, JSONObject plugin) throws IOException {
+        add(name, plugin, null);
+    }
+
+    /**
+     * @param canonicalEntry {@link CanonicalPlugins#entry(String, JSONObject)} of the plugin if already known, or null.
+     */
+    public void add(String name, JSONObject plugin, String canonicalEntry) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put(name, plugin);
+        json.append(members(o.toString()));
+        if (canonical != null) {
+            canonical.append(canonicalEntry != null ? canonicalEntry : CanonicalPlugins.entry(name, plugin));
+        }
+        names.add(name);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Writes the given document with the spilled entries in its empty "plugins" object, in the order they were added.
+     *
+     * @param document {@link JSONObject#toString()} of the document.
+     */
+    public void writeInto(String document, Writer w) throws IOException {
+        List<Integer> order = new ArrayList<Integer>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            order.add(i);
+        }
+        writeInto(document, w, json, order);
+    }
+
+    /**
+     * Writes the given document with the spilled entries in its empty "plugins" object, in the canonical order of
+     * their names.
+     *
+     * @param document {@link JSONObject#writeCanonical(Writer)} of the document.
+     */
+    public void writeCanonicalInto(String document, Writer w) throws IOException {
+        if (canonical == null) {
+            throw new IllegalStateException("The canonical form of the plugins was not kept");
+        }
+        List<Integer> order = new ArrayList<Integer>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return names.get(a).compareTo(names.get(b));
+            }
+        });
+        writeInto(document, w, canonical, order);
+    }
+
+    private static void writeInto(String document, Writer w, Fragments fragments, List<Integer> order)
+            throws IOException {
+        int i = document.indexOf(PLUGINS);
+        if (i < 0) {
+            throw new IllegalArgumentException("No empty plugins object in the document");
+        }
+        int brace = i + PLUGINS.length() - 1;
+        w.write(document, 0, brace);
+        for (int j = 0; j < order.size(); j++) {
+            if (j > 0) {
+                w.write(',');
+            }
+            w.write(fragments.read(order.get(j)));
+        }
+        w.write(document, brace, document.length() - brace);
+    }
+
+    /**
+     * Strips the braces of a one-member object.
+     */
+    private static String members(String o) {
+        return o.substring(1, o.length() - 1);
+    }
+
+    /**
+     * Closes and deletes the spill files.
+     */
+    public void close() throws IOException {
+        json.close();
+        if (canonical != null) {
+            canonical.close();
+        }
+    }
+
+    /**
+     * Strings appended to a file, read back by their index.
+     */
+    private static final class Fragments {
+        private final File file;
+        private final RandomAccessFile data;
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private int size;
+
+        Fragments(File file) throws IOException {
+            this.file = file;
+            this.data = new RandomAccessFile(file, "rw");
+        }
+
+        void append(String s) throws IOException {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            byte[] b = s.getBytes("UTF-8");
+            long offset = data.length();
+            data.seek(offset);
+            data.write(b);
+            offsets[size] = offset;
+            lengths[size] = b.length;
+            size++;
+        }
+
+        String read(int i) throws IOException {
+            byte[] b = new byte[lengths[i]];
+            data.seek(offsets[i]);
+            data.readFully(b);
+            return new String(b, "UTF-8");
+        }
+
+        void close() throws IOException {
+            data.close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.jenkins_ci.update_center;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+import org.jenkins_ci.update_center.model.Checksums;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Every file of the published trees, such as {@code www} and {@code download}, with its size, modification time and
+ * SHA-256, and whether it was added, changed or removed since the previous manifest.
+ * <p/>
+ * A file is only hashed when its size or modification time differ from the previous manifest, and a mirror can be
+ * {@linkplain #syncTo(File) synchronized} by copying the files whose hash differ from what it has, so publishing takes
+ * time in proportion to the changes rather than to the trees.
+ * <p/>
+ * The manifest is a text file with a line per file, sorted by path:
+ * <pre>
+ * status size lastModified sha256 path
+ * </pre>
+ * separated by tabs, where the status is one of {@code A}dded, {@code M}odified, {@code D}eleted or {@code =} for
+ * unchanged, and paths start with the name of their tree. Symbolic links have {@code @} and their target in place of
+ * the SHA-256.
+ */
+public class PublishManifest {
+    /**
+     * Where a mirror keeps the manifest of what it has.
+     */
+    public static final String MIRROR_MANIFEST = ".publish-manifest";
+
+    public static final class Entry {
+        public final String status;
+        public final long size;
+        public final long lastModified;
+        public final String hash;
+        public final String path;
+
+        Entry(String status, long size, long lastModified, String hash, String path) {
+            this.status = status;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.path = path;
+        }
+
+        Entry withStatus(String status) {
+            return new Entry(status, size, lastModified, hash, path);
+        }
+
+        public boolean isLink() {
+            return hash.startsWith("@");
+        }
+    }
+
+    /**
+     * The trees, by name.
+     */
+    private final Map<String, File> roots;
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    private PublishManifest(Map<String, File> roots) {
+        this.roots = roots;
+    }
+
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * Lists the files of the given trees, comparing them with a previous manifest.
+     *
+     * @param roots    The trees, by name.
+     * @param previous The previous manifest, which may not exist.
+     */
+    public static PublishManifest scan(Map<String, File> roots, File previous) throws IOException {
+        Map<String, Entry> before = read(previous);
+        PublishManifest m = new PublishManifest(roots);
+        for (Map.Entry<String, File> root : roots.entrySet()) {
+            if (root.getValue().isDirectory()) {
+                m.scan(root.getValue().getCanonicalFile(), root.getKey(), before);
+            }
+        }
+        for (Entry e : before.values()) {
+            if (!m.entries.containsKey(e.path) && !e.status.equals("D")) {
+                m.entries.put(e.path, e.withStatus("D"));
+            }
+        }
+        for (Entry e : m.entries.values()) {
+            Metrics.counter(Metrics.PUBLISHED_FILES, "status", e.status).increment();
+        }
+        return m;
+    }
+
+    private void scan(File dir, String path, Map<String, Entry> before) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String p = path + "/" + f.getName();
+            File canonical = f.getCanonicalFile();
+            if (!canonical.equals(new File(dir, f.getName()))) {
+                // a symbolic link, kept as such
+                add(before, new Entry(null, 0, 0, "@" + relativize(dir, canonical), p));
+            } else if (f.isDirectory()) {
+                scan(f, p, before);
+            } else if (!f.getName().equals(MIRROR_MANIFEST)) {
+                Entry old = before.get(p);
+                String hash;
+                if (old != null && !old.isLink() && old.size == f.length() && old.lastModified == f.lastModified()) {
+                    hash = old.hash;
+                } else {
+                    hash = Checksums.hash(f).sha256;
+                }
+                add(before, new Entry(null, f.length(), f.lastModified(), hash, p));
+            }
+        }
+    }
+
+    private void add(Map<String, Entry> before, Entry e) {
+        Entry old = before.get(e.path);
+        String status = old == null || old.status.equals("D") ? "A" : old.hash.equals(e.hash) ? "=" : "M";
+        entries.put(e.path, e.withStatus(status));
+    }
+
+    /**
+     * The path of a file relative to a directory, going up with {@code ..} as needed.
+     */
+    private static String relativize(File dir, File f) {
+        String d = dir.getPath() + File.separator;
+        String target = f.getPath();
+        String up = "";
+        while (!target.startsWith(d)) {
+            d = d.substring(0, d.lastIndexOf(File.separatorChar, d.length() - 2) + 1);
+            up += "../";
+        }
+        return (up + target.substring(d.length())).replace(File.separatorChar, '/');
+    }
+
+    public static Map<String, Entry> read(File manifest) throws IOException {
+        Map<String, Entry> r = new TreeMap<String, Entry>();
+        if (!manifest.exists()) {
+            return r;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t", 5);
+                if (f.length == 5) {
+                    r.put(f[4], new Entry(f[0], Long.parseLong(f[1]), Long.parseLong(f[2]), f[3], f[4]));
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return r;
+    }
+
+    public void write(File manifest) throws IOException {
+        write(manifest, entries.values());
+    }
+
+    private static void write(File manifest, Collection<Entry> entries) throws IOException {
+        File dir = manifest.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File tmp = File.createTempFile(manifest.getName(), ".tmp", dir);
+        try {
+            PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                for (Entry e : entries) {
+                    w.print(e.status + "\t" + e.size + "\t" + e.lastModified + "\t" + e.hash + "\t" + e.path + "\n");
+                }
+            } finally {
+                w.close();
+            }
+            if (w.checkError()) {
+                throw new IOException("Failed to write " + tmp);
+            }
+            if (!tmp.renameTo(manifest)) {
+                manifest.delete();
+                if (!tmp.renameTo(manifest)) {
+                    throw new IOException("Failed to rename " + tmp + " to " + manifest);
+                }
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Makes a mirror directory, with a sub-directory per tree, the same as the trees, by copying the files whose hash
+     * differ from those in the manifest of the mirror and removing those that are gone. The manifest of the mirror is
+     * only updated at the end, so an interrupted synchronization is completed by the next one.
+     *
+     * @return The number of files copied or removed.
+     */
+    public int syncTo(File mirror) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        File manifest = new File(mirror, MIRROR_MANIFEST);
+        Map<String, Entry> there = read(manifest);
+        List<Entry> kept = new ArrayList<Entry>();
+        int changes = 0;
+        for (Entry e : entries.values()) {
+            Entry old = there.remove(e.path);
+            if (e.status.equals("D")) {
+                if (old != null) {
+                    remove(mirror, e.path);
+                    changes++;
+                }
+                continue;
+            }
+            if (old == null || !old.hash.equals(e.hash)) {
+                copy(e, new File(mirror, e.path));
+                changes++;
+            }
+            kept.add(e.withStatus("="));
+        }
+        for (Entry e : there.values()) {
+            remove(mirror, e.path);
+            changes++;
+        }
+        write(manifest, kept);
+        Metrics.phase("sync", start);
+        return changes;
+    }
+
+    private void copy(Entry e, File dst) throws IOException, InterruptedException {
+        dst.getParentFile().mkdirs();
+        if (e.isLink()) {
+            ProcessBuilder pb = new ProcessBuilder();
+            pb.command("ln", "-sfn", e.hash.substring(1), dst.getName());
+            pb.directory(dst.getParentFile());
+            if (pb.start().waitFor() != 0) {
+                throw new IOException("ln failed for " + dst);
+            }
+            return;
+        }
+        int slash = e.path.indexOf('/');
+        File src = new File(roots.get(e.path.substring(0, slash)), e.path.substring(slash + 1));
+        File tmp = File.createTempFile(dst.getName(), ".tmp", dst.getParentFile());
+        try {
+            FileUtils.copyFile(src, tmp); // which keeps the modification time
+            if (dst.isDirectory()) {
+                FileUtils.deleteDirectory(dst); // the path of a symbolic link that became a directory, say
+            }
+            if (!tmp.renameTo(dst)) {
+                throw new IOException("Failed to rename " + tmp + " to " + dst);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Removes a file, and the directories it leaves empty.
+     */
+    private static void remove(File mirror, String path) {
+        File f = new File(mirror, path);
+        f.delete();
+        for (File d = f.getParentFile(); !d.equals(mirror) && d.delete(); d = d.getParentFile()) {
+            // only deletes empty directories
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.jenkins_ci.update_center;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the {@code Redirect 302 from to} lines of the {@code .htaccess} of {@code /latest/} as lookup maps instead,
+ * which the web server looks redirects up in by hashing, rather than matching the path against every line.
+ * <p/>
+ * The Apache map is in the {@code txt:} format of {@code RewriteMap}, which {@code httxt2dbm} turns into a {@code dbm:}
+ * one, keyed by the path under {@code /latest/}. The server configuration declares it as the {@value #MAP_NAME} map,
+ * and the {@code .htaccess} then only consults it. The nginx map is a {@code map} block of the {@code http} context,
+ * keyed by the whole URI, that sets {@code $latest_redirect}.
+ * <p/>
+ * Other lines, and without an Apache map the redirects too, still go to the {@code .htaccess}. The maps are written
+ * next to where they go and renamed into place, as the servers reload them as soon as they change.
+ */
+public class RedirectMap extends Writer {
+    /**
+     * Name of the map in the Apache configuration.
+     */
+    public static final String MAP_NAME = "latest";
+
+    private static final String PREFIX = "/latest/";
+    private static final Pattern REDIRECT = Pattern.compile("Redirect 302 " + Pattern.quote(PREFIX) + "(\\S+) (\\S+)");
+
+    private final Writer htaccess;
+    private final File apacheMap;
+    private final File nginxMap;
+    /**
+     * Targets by path under {@link #PREFIX}.
+     */
+    private final Map<String, String> redirects = new TreeMap<String, String>();
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * @param apacheMap Where to write the Apache map, or null.
+     * @param nginxMap  Where to write the nginx map, or null.
+     */
+    public RedirectMap(Writer htaccess, File apacheMap, File nginxMap) throws IOException {
+        this.htaccess = htaccess;
+        this.apacheMap = apacheMap;
+        this.nginxMap = nginxMap;
+        if (apacheMap != null) {
+            htaccess.write("# Redirects are looked up in " + apacheMap.getName() + ", which the server configuration "
+                    + "declares with\n"
+                    + "#   RewriteMap " + MAP_NAME + " txt:/path/to/" + apacheMap.getName() + "\n"
+                    + "# or as a dbm: map made from it by httxt2dbm\n"
+                    + "RewriteEngine on\n"
+                    + "RewriteCond ${" + MAP_NAME + ":$1|-} !=-\n"
+                    + "RewriteRule ^(.+)$ ${" + MAP_NAME + ":$1} [R=302,L]\n");
+        }
+    }
+
+    public Map<String, String> getRedirects() {
+        return Collections.unmodifiableMap(redirects);
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (buf[i] == '\n') {
+                endOfLine();
+            } else {
+                line.append(buf[i]);
+            }
+        }
+    }
+
+    private void endOfLine() throws IOException {
+        Matcher m = REDIRECT.matcher(line);
+        if (m.matches()) {
+            redirects.put(m.group(1), m.group(2));
+        }
+        if (!m.matches() || apacheMap == null) {
+            htaccess.write(line.append('\n').toString());
+        }
+        line.setLength(0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        htaccess.flush();
+    }
+
+    /**
+     * Writes the maps, once all the redirects are in.
+     */
+    @Override
+    public void close() throws IOException {
+        if (line.length() > 0) {
+            endOfLine();
+        }
+        htaccess.close();
+        if (apacheMap != null) {
+            File tmp = tempFor(apacheMap);
+            try {
+                PrintWriter w = open(tmp);
+                try {
+                    w.print("# " + PREFIX + " redirects, for RewriteMap " + MAP_NAME + " txt:" + apacheMap.getName()
+                            + "\n");
+                    for (Map.Entry<String, String> e : redirects.entrySet()) {
+                        w.print(e.getKey() + " " + e.getValue() + "\n");
+                    }
+                } finally {
+                    w.close();
+                }
+                replace(w, tmp, apacheMap);
+            } finally {
+                tmp.delete();
+            }
+        }
+        if (nginxMap != null) {
+            File tmp = tempFor(nginxMap);
+            try {
+                PrintWriter w = open(tmp);
+                try {
+                    w.print("# " + PREFIX + " redirects; in the server: if ($latest_redirect) { return 302 "
+                            + "$latest_redirect; }\n");
+                    w.print("map $uri $latest_redirect {\n");
+                    w.print("    default \"\";\n");
+                    for (Map.Entry<String, String> e : redirects.entrySet()) {
+                        w.print("    " + quote(PREFIX + e.getKey()) + " " + quote(e.getValue()) + ";\n");
+                    }
+                    w.print("}\n");
+                } finally {
+                    w.close();
+                }
+                replace(w, tmp, nginxMap);
+            } finally {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * A temporary file in the directory of the given one, so that it can be renamed over it.
+     */
+    private static File tempFor(File f) throws IOException {
+        File dir = f.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        return File.createTempFile(f.getName(), ".tmp", dir);
+    }
+
+    private static PrintWriter open(File f) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
+    }
+
+    private static void replace(PrintWriter w, File tmp, File f) throws IOException {
+        if (w.checkError()) {
+            throw new IOException("Failed to write " + tmp);
+        }
+        if (!tmp.renameTo(f)) {
+            f.delete();
+            if (!tmp.renameTo(f)) {
+                throw new IOException("Failed to rename " + tmp + " to " + f);
+            }
+        }
+    }
+
+    private static String quote(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
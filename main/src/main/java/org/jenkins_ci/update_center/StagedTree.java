@@ -0,0 +1,141 @@
+package org.jenkins_ci.update_center;
+
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directory tree, such as {@code www}, that is served while it is generated again, so it is built in a new generation
+ * directory next to it instead, and swapped in at once at the end.
+ * <p/>
+ * The tree itself is a symbolic link to its current generation, replaced by renaming a new link over it. Files of the
+ * new generation that are the same as in the previous one are hard links to them, so only the changed files take
+ * space, and the unchanged ones keep their modification times. The previous generation is kept, for the readers that
+ * are still in it, and older ones are removed.
+ */
+public class StagedTree {
+    private final File link;
+    private final File parent;
+    private File staging;
+
+    /**
+     * @param link The tree, which becomes a symbolic link if it is a directory.
+     */
+    public StagedTree(File link) {
+        this.link = link.getAbsoluteFile();
+        this.parent = this.link.getParentFile();
+    }
+
+    /**
+     * Creates the directory of the new generation, to build the tree in.
+     */
+    public File begin() throws IOException, InterruptedException {
+        if (link.isDirectory() && !isLink(link)) {
+            // a tree from before generations: it becomes the first one
+            File first = generation(0);
+            if (!link.renameTo(first)) {
+                throw new IOException("Failed to rename " + link + " to " + first);
+            }
+            ln(first.getName(), link);
+        }
+        staging = generation(System.currentTimeMillis());
+        if (!staging.mkdirs()) {
+            throw new IOException("Failed to create " + staging);
+        }
+        return staging;
+    }
+
+    private File generation(long id) {
+        return new File(parent, link.getName() + "." + id);
+    }
+
+    private static boolean isLink(File f) throws IOException {
+        return !f.getCanonicalFile().equals(new File(f.getParentFile().getCanonicalFile(), f.getName()));
+    }
+
+    /**
+     * Links the unchanged files to the previous generation, makes the new one current, and removes those before the
+     * previous one.
+     */
+    public void commit() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        File previous = link.exists() ? link.getCanonicalFile() : null;
+        int linked = 0;
+        if (previous != null && previous.isDirectory()) {
+            linked = linkUnchanged(previous, staging);
+        }
+
+        // a new link renamed over the old one, so that the tree is always there
+        File tmp = new File(parent, link.getName() + ".link" + System.currentTimeMillis());
+        ln(staging.getName(), tmp);
+        if (!tmp.renameTo(link)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp + " to " + link);
+        }
+        System.out.println("Switched " + link + " to " + staging.getName() + ", " + linked
+                + " files unchanged from the previous generation");
+
+        String prefix = link.getName() + ".";
+        File[] siblings = parent.listFiles();
+        for (File f : siblings == null ? new File[0] : siblings) {
+            if (f.getName().startsWith(prefix) && f.isDirectory() && !isLink(f)
+                    && f.getName().substring(prefix.length()).matches("\\d+")
+                    && !f.equals(staging) && !f.equals(previous)) {
+                FileUtils.deleteDirectory(f);
+            }
+        }
+        Metrics.phase("swap", start);
+    }
+
+    /**
+     * Replaces the files of the staging directory that have the same contents in the previous generation by links to
+     * those, with one {@code ln} per directory.
+     *
+     * @return The number of files linked.
+     */
+    private static int linkUnchanged(File previous, File staging) throws IOException, InterruptedException {
+        File[] files = staging.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int linked = 0;
+        List<String> same = new ArrayList<String>();
+        for (File f : files) {
+            File old = new File(previous, f.getName());
+            if (isLink(f)) {
+                continue;
+            }
+            if (f.isDirectory()) {
+                if (old.isDirectory() && !isLink(old)) {
+                    linked += linkUnchanged(old, f);
+                }
+            } else if (old.isFile() && !isLink(old) && old.length() == f.length() && FileUtils.contentEquals(old, f)) {
+                same.add(old.getAbsolutePath());
+            }
+        }
+        if (!same.isEmpty()) {
+            List<String> command = new ArrayList<String>();
+            command.add("ln");
+            command.add("-f");
+            command.addAll(same);
+            command.add(staging.getAbsolutePath());
+            if (new ProcessBuilder(command).start().waitFor() != 0) {
+                throw new IOException("ln failed in " + staging);
+            }
+            linked += same.size();
+        }
+        return linked;
+    }
+
+    private static void ln(String target, File link) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command("ln", "-s", target, link.getAbsolutePath());
+        if (pb.start().waitFor() != 0) {
+            throw new IOException("ln failed for " + link);
+        }
+    }
+}
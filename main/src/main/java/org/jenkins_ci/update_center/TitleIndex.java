@@ -0,0 +1,94 @@
+package org.jenkins_ci.update_center;
+
+import com.sun.xml.bind.v2.util.EditDistance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the title within an edit distance of 1 of a name, the same one as {@link EditDistance#findNearest(String,
+ * String[])} followed by a distance check would, without comparing the name to every title.
+ * <p/>
+ * Two strings are within an edit distance of 1 only if one of them, or one of them with a character deleted, is also
+ * one of them with a character deleted. So every title is indexed under itself and its deletions, and a lookup only
+ * compares the name to the titles found under the name and its deletions.
+ */
+final class TitleIndex {
+    private final String[] titles;
+    /**
+     * Positions of the titles indexed under each string, in increasing order.
+     */
+    private final Map<String, int[]> index = new HashMap<String, int[]>();
+
+    TitleIndex(String[] titles) {
+        this.titles = titles.clone();
+        Map<String, List<Integer>> lists = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < titles.length; i++) {
+            for (String key : keys(titles[i])) {
+                List<Integer> l = lists.get(key);
+                if (l == null) {
+                    l = new ArrayList<Integer>(1);
+                    lists.put(key, l);
+                }
+                if (l.isEmpty() || l.get(l.size() - 1) != i) {
+                    l.add(i);
+                }
+            }
+        }
+        for (Map.Entry<String, List<Integer>> e : lists.entrySet()) {
+            List<Integer> l = e.getValue();
+            int[] a = new int[l.size()];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = l.get(i);
+            }
+            index.put(e.getKey(), a);
+        }
+    }
+
+    /**
+     * The string itself and the strings with one of its characters deleted.
+     */
+    private static List<String> keys(String s) {
+        List<String> r = new ArrayList<String>(s.length() + 1);
+        r.add(s);
+        for (int i = 0; i < s.length(); i++) {
+            if (i == 0 || s.charAt(i) != s.charAt(i - 1)) { // deleting either of two equal characters is the same
+                r.add(s.substring(0, i) + s.substring(i + 1));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns the first of the titles equal to the name, or else the first of those within an edit distance of 1, or
+     * null if there are none.
+     */
+    String findNearest(String name) {
+        int[] exact = index.get(name);
+        if (exact != null) {
+            for (int i : exact) {
+                if (titles[i].equals(name)) {
+                    return titles[i];
+                }
+            }
+        }
+        int best = -1;
+        for (String key : keys(name)) {
+            int[] candidates = index.get(key);
+            if (candidates == null) {
+                continue;
+            }
+            for (int i : candidates) {
+                if (best >= 0 && i >= best) {
+                    break;
+                }
+                if (EditDistance.editDistance(name, titles[i]) == 1) {
+                    best = i;
+                }
+            }
+        }
+        return best < 0 ? null : titles[best];
+    }
+}
@@ -0,0 +1,78 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+
+public class CanonicalPluginsTest extends TestCase {
+    public void testSameSignatureAsCanonicalizingEverything() throws Exception {
+        JSONObject root = new JSONObject();
+        root.put("updateCenterVersion", "1");
+        JSONObject core = new JSONObject();
+        core.put("name", "core");
+        core.put("version", "1.500");
+        root.put("core", core);
+
+        JSONObject plugins = new JSONObject();
+        CanonicalPlugins canonical = new CanonicalPlugins();
+        for (int i = 0; i < 200; i++) {
+            String name = (i % 3 == 0 ? "Zeta-" : i % 3 == 1 ? "alpha-" : "\u00e9diteur-") + i;
+            JSONObject p = new JSONObject();
+            p.put("name", name);
+            p.put("version", "1." + i);
+            p.put("excerpt", "Uses \"quotes\", </script> and \u00fcnicode [" + i + "]");
+            JSONArray labels = new JSONArray();
+            labels.add("scm");
+            labels.add("misc");
+            p.put("labels", labels);
+            plugins.put(name, p);
+            canonical.add(name, CanonicalPlugins.entry(name, p));
+        }
+        root.put("plugins", plugins);
+        root.put("id", "default");
+
+        StringWriter expected = new StringWriter();
+        root.writeCanonical(expected);
+        StringWriter actual = new StringWriter();
+        canonical.writeInto(root, actual);
+        assertEquals(expected.toString(), actual.toString());
+        assertTrue(expected.toString().length() > 8192);
+
+        KeyPairGenerator g = KeyPairGenerator.getInstance("RSA");
+        g.initialize(1024);
+        KeyPair key = g.generateKeyPair();
+        for (boolean flush : new boolean[]{false, true}) {
+            ByteArrayOutputStream a = new ByteArrayOutputStream();
+            finish(root.writeCanonical(new OutputStreamWriter(a, "UTF-8")), flush);
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            finish(canonical.writeInto(root, new OutputStreamWriter(b, "UTF-8")), flush);
+            assertTrue(Arrays.equals(sign(key.getPrivate(), a.toByteArray()), sign(key.getPrivate(), b.toByteArray())));
+        }
+    }
+
+    /**
+     * Like {@link Main#sign(JSONObject)}, which signs once without flushing the writer, for old versions of Jenkins.
+     */
+    private static void finish(Writer w, boolean flush) throws Exception {
+        if (flush) {
+            w.close();
+        }
+    }
+
+    private static byte[] sign(PrivateKey key, byte[] data) throws Exception {
+        Signature s = Signature.getInstance("SHA1withRSA");
+        s.initSign(key);
+        s.update(data);
+        return s.sign();
+    }
+}
@@ -0,0 +1,122 @@
+package org.jenkins_ci.update_center;
+
+import hudson.plugins.jira.soap.RemotePage;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.standin.ConfluenceStandIn;
+
+import java.io.File;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class ConfluencePluginListTest extends TestCase {
+    private static final String GIT = "https://wiki.jenkins-ci.org/display/JENKINS/Git+Plugin";
+
+    private File wiki;
+
+    @Override
+    protected void setUp() throws Exception {
+        wiki = File.createTempFile("wiki", ".jsonl");
+        FileUtils.writeStringToFile(wiki,
+                "{\"id\":1,\"title\":\"Plugins\",\"url\":\"https://wiki.jenkins-ci.org/display/JENKINS/Plugins\","
+                        + "\"version\":1}\n"
+                        + "{\"id\":2,\"title\":\"Git Plugin\",\"url\":\"" + GIT + "\",\"version\":3,"
+                        + "\"labels\":[\"plugin-scm\",\"featured\"]}\n");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        wiki.delete();
+    }
+
+    public void testConcurrentLookupsAreMadeOnce() throws Exception {
+        ConfluenceStandIn standIn = new ConfluenceStandIn(wiki).withLatency(50);
+        final ConfluencePluginList list = new ConfluencePluginList(standIn.createService());
+        long before = standIn.calls.get();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> results = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 16; i++) {
+            final boolean nearest = i % 2 == 0;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        RemotePage page = nearest ? list.findNearest("git") : list.getPage(GIT);
+                        String r = page.getTitle() + Arrays.asList(list.getLabels(page));
+                        synchronized (results) {
+                            results.add(r);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(16, results.size());
+        for (String r : results) {
+            assertEquals("Git Plugin[scm]", r);
+        }
+        assertEquals(2, standIn.calls.get() - before);
+    }
+
+    public void testPrefetchedPagesAreNotFetchedAgain() throws Exception {
+        ConfluenceStandIn standIn = new ConfluenceStandIn(wiki).withLatency(20);
+        ConfluencePluginList list = new ConfluencePluginList(standIn.createService());
+        long before = standIn.calls.get();
+        list.prefetch(GIT);
+        list.prefetchNearest("git");
+        list.prefetchNearest("unrelated");
+        RemotePage page = list.findNearest("git");
+        assertEquals("[scm]", Arrays.asList(list.getLabels(list.getPage(GIT))).toString());
+        assertEquals("Git Plugin", page.getTitle());
+        assertEquals(2, standIn.calls.get() - before);
+    }
+
+    public void testBoundedCacheAndPrefetches() throws Exception {
+        String svn = "https://wiki.jenkins-ci.org/display/JENKINS/Svn+Plugin";
+        FileUtils.writeStringToFile(wiki, "{\"id\":3,\"title\":\"Svn Plugin\",\"url\":\"" + svn
+                + "\",\"version\":1}\n", "UTF-8", true);
+        ConfluenceStandIn standIn = new ConfluenceStandIn(wiki).withLatency(5);
+        ConfluencePluginList list = new ConfluencePluginList(standIn.createService());
+        list.setCacheSize(1);
+        long before = standIn.calls.get();
+        list.getPage(GIT);
+        list.getPage(svn);
+        list.getPage(GIT); // forgotten for svn
+        assertEquals(3, standIn.calls.get() - before);
+
+        // more than can wait: the rest are dropped rather than queued
+        for (int i = 0; i < 1000; i++) {
+            list.prefetch(i % 2 == 0 ? GIT : svn);
+        }
+        assertEquals("Git Plugin", list.getPage(GIT).getTitle());
+    }
+
+    public void testCallsPerSecondAreLimited() throws Exception {
+        ConfluencePluginList list = new ConfluencePluginList(new ConfluenceStandIn(wiki).createService());
+        list.setLimits(1, 20);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            try {
+                list.getPage("https://wiki.jenkins-ci.org/display/JENKINS/Missing");
+                fail();
+            } catch (RemoteException e) {
+                // failures aren't cached, so every lookup is a call
+            }
+        }
+        assertTrue(System.currentTimeMillis() - start >= 180);
+    }
+}
@@ -0,0 +1,47 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+
+public class FragmentCacheTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("fragments", "");
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testRoundTrip() throws Exception {
+        FragmentCache cache = new FragmentCache(dir);
+        String key = new FragmentCache.Fingerprint().add("git").add(null).toString();
+        assertNull(cache.get(key));
+
+        JSONObject json = new JSONObject();
+        json.put("name", "git");
+        json.put("excerpt", "Uses <a href='http://git-scm.com/'>Git</a> and \u00fcnicode");
+        JSONArray labels = new JSONArray();
+        labels.add("scm");
+        json.put("labels", labels);
+        cache.put(key, json);
+        assertEquals(json.toString(), cache.get(key).toString());
+    }
+
+    public void testFingerprintsKeepValuesApart() {
+        assertFalse(new FragmentCache.Fingerprint().add("ab").add("c").toString()
+                .equals(new FragmentCache.Fingerprint().add("a").add("bc").toString()));
+        assertFalse(new FragmentCache.Fingerprint().add(null).toString()
+                .equals(new FragmentCache.Fingerprint().add("null").toString()));
+        assertEquals(new FragmentCache.Fingerprint().add("a").add(1).toString(),
+                new FragmentCache.Fingerprint().add("a").add("1").toString());
+    }
+}
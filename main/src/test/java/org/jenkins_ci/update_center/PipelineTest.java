@@ -0,0 +1,77 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PipelineTest extends TestCase {
+    public void testOrderAndBound() throws Exception {
+        checkOrderAndBound(false);
+    }
+
+    public void testOrderAndBoundPerJob() throws Exception {
+        checkOrderAndBound(true);
+    }
+
+    private void checkOrderAndBound(boolean perJob) throws Exception {
+        final Random r = new Random(42);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<int[]> jobs = new ArrayList<int[]>();
+        for (int i = 0; i < 200; i++) {
+            jobs.add(new int[]{i, 0});
+        }
+        Pipeline.Stage<int[]> slow = new Pipeline.Stage<int[]>() {
+            public void process(int[] job) throws Exception {
+                int n = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), n));
+                }
+                Thread.sleep(r.nextInt(3));
+                job[1]++;
+                running.decrementAndGet();
+            }
+        };
+        final List<Integer> out = new ArrayList<Integer>();
+        new Pipeline<int[]>(8).perJob(perJob).stage("a", 4, slow).stage("b", 3, slow).run(jobs, new Pipeline.Sink<int[]>() {
+            public void accept(int[] job, Exception failure) {
+                assertNull(failure);
+                assertEquals(2, job[1]);
+                out.add(job[0]);
+            }
+        });
+        assertEquals(200, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(i, (int) out.get(i));
+        }
+        assertTrue(maxRunning.get() <= 7);
+    }
+
+    public void testFailureSkipsLaterStages() throws Exception {
+        List<int[]> jobs = new ArrayList<int[]>();
+        for (int i = 0; i < 10; i++) {
+            jobs.add(new int[]{i, 0});
+        }
+        final List<String> out = new ArrayList<String>();
+        new Pipeline<int[]>(3).stage("fail", 2, new Pipeline.Stage<int[]>() {
+            public void process(int[] job) throws Exception {
+                if (job[0] % 3 == 0) {
+                    throw new IOException("boom " + job[0]);
+                }
+            }
+        }).stage("count", 1, new Pipeline.Stage<int[]>() {
+            public void process(int[] job) {
+                job[1]++;
+            }
+        }).run(jobs, new Pipeline.Sink<int[]>() {
+            public void accept(int[] job, Exception failure) {
+                out.add(failure != null ? failure.getMessage() : job[0] + ":" + job[1]);
+            }
+        });
+        assertEquals("[boom 0, 1:1, 2:1, boom 3, 4:1, 5:1, boom 6, 7:1, 8:1, boom 9]", out.toString());
+    }
+}
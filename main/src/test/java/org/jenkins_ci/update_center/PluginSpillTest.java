@@ -0,0 +1,70 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.StringWriter;
+
+public class PluginSpillTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("spill", "");
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testSameDocumentAsInMemory() throws Exception {
+        JSONObject plugins = new JSONObject();
+        PluginSpill spill = new PluginSpill(dir, true);
+        try {
+            String[] names = {"git", "Ant", "\u00e9diteur", "build-timeout", "ant"};
+            for (int i = 0; i < names.length; i++) {
+                JSONObject p = new JSONObject();
+                p.put("name", names[i]);
+                p.put("version", "1." + i);
+                p.put("excerpt", "Uses \"quotes\", </script> and \u00fcnicode");
+                JSONArray labels = new JSONArray();
+                labels.add("scm");
+                p.put("labels", labels);
+                plugins.put(names[i], p);
+                spill.add(names[i], p);
+            }
+            assertEquals(names.length, spill.size());
+
+            JSONObject root = root(new JSONObject());
+            JSONObject full = root(plugins);
+
+            StringWriter w = new StringWriter();
+            spill.writeInto(root.toString(), w);
+            assertEquals(full.toString(), w.toString());
+
+            StringWriter expected = new StringWriter();
+            full.writeCanonical(expected);
+            StringWriter document = new StringWriter();
+            root.writeCanonical(document);
+            w = new StringWriter();
+            spill.writeCanonicalInto(document.toString(), w);
+            assertEquals(expected.toString(), w.toString());
+        } finally {
+            spill.close();
+        }
+        assertEquals(0, dir.list().length);
+    }
+
+    private static JSONObject root(JSONObject plugins) {
+        JSONObject root = new JSONObject();
+        root.put("updateCenterVersion", "1");
+        root.put("plugins", plugins);
+        root.put("id", "test");
+        return root;
+    }
+}
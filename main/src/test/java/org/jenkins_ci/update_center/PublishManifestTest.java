@@ -0,0 +1,78 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PublishManifestTest extends TestCase {
+    private File dir;
+    private File www;
+    private File mirror;
+    private File manifest;
+    private Map<String, File> trees;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("publish", "");
+        dir.delete();
+        www = new File(dir, "www");
+        mirror = new File(dir, "mirror");
+        manifest = new File(dir, "manifest");
+        trees = Collections.singletonMap("www", www);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private Map<String, String> scan() throws Exception {
+        PublishManifest m = PublishManifest.scan(trees, manifest);
+        m.write(manifest);
+        Map<String, String> statuses = new HashMap<String, String>();
+        for (PublishManifest.Entry e : m.getEntries()) {
+            statuses.put(e.path, e.status);
+        }
+        return statuses;
+    }
+
+    public void testChangesAreSynced() throws Exception {
+        FileUtils.writeStringToFile(new File(www, "a/1.0/a.hpi"), "one", "UTF-8");
+        FileUtils.writeStringToFile(new File(www, "b/1.0/b.hpi"), "two", "UTF-8");
+        FileUtils.writeStringToFile(new File(www, "index.html"), "index", "UTF-8");
+        assertEquals(0, new ProcessBuilder("ln", "-s", "1.0", "latest").directory(new File(www, "a")).start().waitFor());
+
+        Map<String, String> s = scan();
+        assertEquals(4, s.size());
+        assertEquals("A", s.get("www/a/latest"));
+        assertEquals(4, PublishManifest.scan(trees, manifest).syncTo(mirror));
+        assertEquals("one", FileUtils.readFileToString(new File(mirror, "www/a/latest/a.hpi"), "UTF-8"));
+
+        // rewritten with the same contents, changed, removed and added
+        FileUtils.writeStringToFile(new File(www, "index.html"), "index", "UTF-8");
+        FileUtils.writeStringToFile(new File(www, "a/1.0/a.hpi"), "three", "UTF-8");
+        FileUtils.deleteDirectory(new File(www, "b"));
+        FileUtils.writeStringToFile(new File(www, "c.txt"), "four", "UTF-8");
+
+        s = scan();
+        assertEquals("=", s.get("www/index.html"));
+        assertEquals("M", s.get("www/a/1.0/a.hpi"));
+        assertEquals("D", s.get("www/b/1.0/b.hpi"));
+        assertEquals("A", s.get("www/c.txt"));
+        assertEquals("=", s.get("www/a/latest"));
+
+        PublishManifest m = PublishManifest.scan(trees, manifest);
+        assertEquals(3, m.syncTo(mirror));
+        assertEquals("three", FileUtils.readFileToString(new File(mirror, "www/a/1.0/a.hpi"), "UTF-8"));
+        assertFalse(new File(mirror, "www/b").exists());
+        assertEquals("four", FileUtils.readFileToString(new File(mirror, "www/c.txt"), "UTF-8"));
+        assertEquals(0, m.syncTo(mirror));
+
+        // removed once, so no longer listed
+        assertNull(scan().get("www/b/1.0/b.hpi"));
+    }
+}
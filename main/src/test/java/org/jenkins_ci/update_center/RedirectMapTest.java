@@ -0,0 +1,69 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class RedirectMapTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("redirects", "");
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testMaps() throws Exception {
+        File apache = new File(dir, "latest.map");
+        File nginx = new File(dir, "latest.conf");
+        StringWriter htaccess = new StringWriter();
+        PrintWriter w = new PrintWriter(new RedirectMap(htaccess, apache, nginx), true);
+        w.printf("Redirect 302 %s %s\n", "/latest/foo.hpi", "/download/plugins/foo/1.1/foo.hpi");
+        w.printf("Redirect 302 %s %s\n", "/latest/jenkins.war", "/war/1.500/jenkins.war");
+        w.println("Options +FollowSymLinks");
+        w.close();
+
+        String h = htaccess.toString();
+        assertFalse(h.contains("Redirect 302"));
+        assertTrue(h.contains("RewriteRule ^(.+)$ ${latest:$1} [R=302,L]"));
+        assertTrue(h.contains("Options +FollowSymLinks\n"));
+        assertEquals("foo.hpi /download/plugins/foo/1.1/foo.hpi\njenkins.war /war/1.500/jenkins.war\n",
+                FileUtils.readFileToString(apache, "UTF-8").replaceFirst("^#.*\n", ""));
+        assertTrue(FileUtils.readFileToString(nginx, "UTF-8")
+                .contains("    \"/latest/foo.hpi\" \"/download/plugins/foo/1.1/foo.hpi\";\n"));
+    }
+
+    public void testNginxOnlyKeepsRedirects() throws Exception {
+        File nginx = new File(dir, "latest.conf");
+        StringWriter htaccess = new StringWriter();
+        PrintWriter w = new PrintWriter(new RedirectMap(htaccess, null, nginx), true);
+        w.printf("Redirect 302 %s %s\n", "/latest/foo.hpi", "/download/plugins/foo/1.1/foo.hpi");
+        w.close();
+
+        assertEquals("Redirect 302 /latest/foo.hpi /download/plugins/foo/1.1/foo.hpi\n", htaccess.toString());
+        assertTrue(nginx.exists());
+    }
+
+    public void testMapsAreReplaced() throws Exception {
+        File apache = new File(dir, "maps/latest.map");
+        File nginx = new File(dir, "maps/latest.conf");
+        for (String version : new String[] {"1.1", "1.2"}) {
+            PrintWriter w = new PrintWriter(new RedirectMap(new StringWriter(), apache, nginx), true);
+            w.printf("Redirect 302 %s %s\n", "/latest/foo.hpi", "/download/plugins/foo/" + version + "/foo.hpi");
+            w.close();
+        }
+
+        assertEquals("foo.hpi /download/plugins/foo/1.2/foo.hpi\n",
+                FileUtils.readFileToString(apache, "UTF-8").replaceFirst("^#.*\n", ""));
+        assertFalse(FileUtils.readFileToString(nginx, "UTF-8").contains("1.1"));
+        assertEquals(2, apache.getParentFile().list().length); // no temporary files left behind
+    }
+}
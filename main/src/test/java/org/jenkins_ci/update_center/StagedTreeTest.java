@@ -0,0 +1,57 @@
+package org.jenkins_ci.update_center;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+
+public class StagedTreeTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("staged", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testGenerations() throws Exception {
+        File www = new File(dir, "www");
+        FileUtils.writeStringToFile(new File(www, "stale.txt"), "stale", "UTF-8");
+
+        StagedTree tree = new StagedTree(www);
+        File first = tree.begin();
+        // the existing tree is served until the end
+        assertEquals("stale", FileUtils.readFileToString(new File(www, "stale.txt"), "UTF-8"));
+        FileUtils.writeStringToFile(new File(first, "a/index.html"), "same", "UTF-8");
+        FileUtils.writeStringToFile(new File(first, "update-center.json"), "one", "UTF-8");
+        tree.commit();
+        assertEquals(first.getCanonicalFile(), www.getCanonicalFile());
+        assertFalse(new File(www, "stale.txt").exists());
+        File index = new File(www, "a/index.html");
+        index.setLastModified(index.lastModified() - 100000);
+        long lastModified = index.lastModified();
+
+        Thread.sleep(5); // for another generation name
+        File second = tree.begin();
+        FileUtils.writeStringToFile(new File(second, "a/index.html"), "same", "UTF-8");
+        FileUtils.writeStringToFile(new File(second, "update-center.json"), "two", "UTF-8");
+        tree.commit();
+        assertEquals(second.getCanonicalFile(), www.getCanonicalFile());
+        assertEquals("two", FileUtils.readFileToString(new File(www, "update-center.json"), "UTF-8"));
+        assertEquals("one", FileUtils.readFileToString(new File(first, "update-center.json"), "UTF-8"));
+        // linked to the previous generation rather than written again
+        assertEquals(lastModified, new File(www, "a/index.html").lastModified());
+
+        Thread.sleep(5);
+        tree.begin();
+        tree.commit();
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+    }
+}
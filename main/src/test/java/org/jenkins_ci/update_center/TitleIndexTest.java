@@ -0,0 +1,39 @@
+package org.jenkins_ci.update_center;
+
+import com.sun.xml.bind.v2.util.EditDistance;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class TitleIndexTest extends TestCase {
+    public void testSameMatchesAsScanning() {
+        Random r = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            String[] titles = new String[r.nextInt(30) + 1];
+            for (int i = 0; i < titles.length; i++) {
+                titles[i] = randomString(r);
+            }
+            TitleIndex index = new TitleIndex(titles);
+            for (int i = 0; i < 50; i++) {
+                String name = randomString(r);
+                assertEquals(name, scan(name, titles), index.findNearest(name));
+            }
+        }
+    }
+
+    /**
+     * How titles used to be matched, against all of them.
+     */
+    private static String scan(String name, String[] titles) {
+        String nearest = EditDistance.findNearest(name, titles);
+        return EditDistance.editDistance(nearest, name) <= 1 ? nearest : null;
+    }
+
+    private static String randomString(Random r) {
+        StringBuilder b = new StringBuilder();
+        for (int n = r.nextInt(5); n > 0; n--) {
+            b.append("ab-".charAt(r.nextInt(3)));
+        }
+        return b.toString();
+    }
+}
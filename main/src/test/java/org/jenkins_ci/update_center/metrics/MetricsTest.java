@@ -0,0 +1,71 @@
+package org.jenkins_ci.update_center.metrics;
+
+import junit.framework.TestCase;
+
+import java.io.StringWriter;
+
+public class MetricsTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        Metrics.reset();
+    }
+
+    public void testPrometheusFormat() throws Exception {
+        Metrics.counter(Metrics.DOWNLOADED_BYTES).add(1234);
+        Metrics.cache("wikiPage", true);
+        Metrics.cache("wikiPage", true);
+        Metrics.cache("wikiPage", false);
+        Metrics.histogram(Metrics.PHASE_SECONDS, "phase", "digest").observeNanos(2000000);   // 2ms
+        Metrics.histogram(Metrics.PHASE_SECONDS, "phase", "digest").observeNanos(20000000000L);  // 20s
+        Metrics.gauge(Metrics.RUN_SUCCESS).set(1);
+
+        StringWriter w = new StringWriter();
+        Metrics.writeTo(w);
+        String out = w.toString();
+
+        assertTrue(out, out.contains("# TYPE update_center_downloaded_bytes_total counter\n"
+                + "update_center_downloaded_bytes_total 1234\n"));
+        assertTrue(out, out.contains("update_center_cache_requests_total{cache=\"wikiPage\",result=\"hit\"} 2\n"));
+        assertTrue(out, out.contains("update_center_cache_requests_total{cache=\"wikiPage\",result=\"miss\"} 1\n"));
+        assertTrue(out, out.contains("# TYPE update_center_phase_seconds histogram\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_bucket{phase=\"digest\",le=\"0.001\"} 0\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_bucket{phase=\"digest\",le=\"0.005\"} 1\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_bucket{phase=\"digest\",le=\"10\"} 1\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_bucket{phase=\"digest\",le=\"30\"} 2\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_bucket{phase=\"digest\",le=\"+Inf\"} 2\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_sum{phase=\"digest\"} 20.002\n"));
+        assertTrue(out, out.contains("update_center_phase_seconds_count{phase=\"digest\"} 2\n"));
+        assertTrue(out, out.contains("update_center_run_success 1\n"));
+        // one header per family
+        assertEquals(out.indexOf("# TYPE update_center_cache_requests_total"),
+                out.lastIndexOf("# TYPE update_center_cache_requests_total"));
+    }
+
+    public void testLabelEscaping() throws Exception {
+        Metrics.counter(Metrics.PLUGINS, "name", "a\"b\\c").increment();
+        StringWriter w = new StringWriter();
+        Metrics.writeTo(w);
+        assertTrue(w.toString(), w.toString().contains("update_center_plugins_total{name=\"a\\\"b\\\\c\"} 1\n"));
+    }
+
+    public void testSameMetricIsReused() throws Exception {
+        assertSame(Metrics.counter(Metrics.PLUGINS, "name", "a"), Metrics.counter(Metrics.PLUGINS, "name", "a"));
+        assertNotSame(Metrics.counter(Metrics.PLUGINS, "name", "a"), Metrics.counter(Metrics.PLUGINS, "name", "b"));
+        try {
+            Metrics.gauge(Metrics.PLUGINS, "name", "a");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // already a counter
+        }
+
+        Metrics.phase("digest", System.nanoTime());
+        Metrics.cache("wikiPage", true);
+        assertEquals(1, Metrics.histogram(Metrics.PHASE_SECONDS, "phase", "digest").getCount());
+        assertEquals(1, Metrics.counter(Metrics.CACHE_REQUESTS, "cache", "wikiPage", "result", "hit").get());
+        Metrics.reset();
+        Metrics.phase("digest", System.nanoTime());
+        Metrics.cache("wikiPage", false);
+        assertEquals(1, Metrics.histogram(Metrics.PHASE_SECONDS, "phase", "digest").getCount());
+        assertEquals(1, Metrics.counter(Metrics.CACHE_REQUESTS, "cache", "wikiPage", "result", "miss").get());
+    }
+}
@@ -0,0 +1,68 @@
+package org.jenkins_ci.update_center.metrics;
+
+import junit.framework.TestCase;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.StringWriter;
+
+public class TracerTest extends TestCase {
+    @Override
+    protected void tearDown() throws Exception {
+        // the recording is global, and would keep what the tests after this one work on
+        Tracer.stop();
+        super.tearDown();
+    }
+
+    public void testDisabledRecordsNothing() throws Exception {
+        Tracer.start();
+        Tracer.stop();
+        StringWriter w = new StringWriter();
+        Tracer.Span a = Tracer.begin("resolve", "x");
+        assertSame(a, Tracer.begin("getDigest", "y"));
+        a.end();
+        Tracer.writeTo(w);
+        assertEquals(0, JSONObject.fromObject(w.toString()).getJSONArray("traceEvents").size());
+    }
+
+    public void testCompleteEvents() throws Exception {
+        Tracer.start();
+        Tracer.Span outer = Tracer.begin("plugin", "git");
+        Tracer.Span inner = Tracer.begin("readPOM", "git-1.0.pom \"quoted\"");
+        Thread.sleep(2);
+        inner.end();
+        outer.end();
+
+        StringWriter w = new StringWriter();
+        Tracer.writeTo(w);
+        JSONArray events = JSONObject.fromObject(w.toString()).getJSONArray("traceEvents");
+        assertEquals(3, events.size());
+
+        JSONObject thread = events.getJSONObject(0);
+        assertEquals("M", thread.getString("ph"));
+        assertEquals(Thread.currentThread().getName(), thread.getJSONObject("args").getString("name"));
+
+        JSONObject pom = events.getJSONObject(1);
+        assertEquals("readPOM", pom.getString("name"));
+        assertEquals("X", pom.getString("ph"));
+        assertEquals("git-1.0.pom \"quoted\"", pom.getJSONObject("args").getString("detail"));
+        assertTrue(pom.getDouble("dur") >= 2000);
+
+        JSONObject plugin = events.getJSONObject(2);
+        assertEquals("plugin", plugin.getString("name"));
+        assertTrue(plugin.getDouble("ts") <= pom.getDouble("ts"));
+        assertTrue(plugin.getDouble("dur") >= pom.getDouble("dur"));
+    }
+
+    public void testDetailIsRecordedWhenTheSpanEnds() throws Exception {
+        Tracer.start();
+        StringBuilder job = new StringBuilder("git");
+        Tracer.begin("plugin", job).end();
+        job.append("-client");
+
+        StringWriter w = new StringWriter();
+        Tracer.writeTo(w);
+        JSONArray events = JSONObject.fromObject(w.toString()).getJSONArray("traceEvents");
+        assertEquals("git", events.getJSONObject(1).getJSONObject("args").getString("detail"));
+    }
+}
@@ -0,0 +1,66 @@
+package org.jenkins_ci.update_center.model;
+
+import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ChecksumsTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("checksums", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testCopyHashesWhatGoesThrough() throws Exception {
+        byte[] data = new byte[200000];
+        new Random(1).nextBytes(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Checksums c = Checksums.copy(new ByteArrayInputStream(data), out);
+
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+        assertEquals(new String(Base64.encodeBase64(MessageDigest.getInstance("SHA1").digest(data))),
+                c.getSha1Base64());
+        assertEquals(64, c.sha256.length());
+        c.verify(c.sha1.toUpperCase(), c.sha256, "data");
+        c.verify(null, null, "data");
+        try {
+            c.verify(c.sha1, c.sha1, "data");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("SHA-256 of data"));
+        }
+    }
+
+    public void testKeptNextToTheFile() throws Exception {
+        File f = new File(dir, "a.hpi");
+        FileUtils.writeStringToFile(f, "contents", "US-ASCII");
+        assertNull(Checksums.read(f));
+
+        Checksums c = Checksums.of(f);
+        assertEquals("4a756ca07e9487f482465a99e8286abc86ba4dc7", c.sha1);
+        assertEquals(c.sha1, FileUtils.readFileToString(new File(dir, "a.hpi.sha1"), "US-ASCII"));
+        assertEquals(c.sha256, Checksums.read(f).sha256);
+
+        // a file newer than its checksums is hashed again
+        FileUtils.writeStringToFile(f, "changed", "US-ASCII");
+        f.setLastModified(System.currentTimeMillis() + 5000);
+        assertNull(Checksums.read(f));
+        assertFalse(c.sha1.equals(Checksums.of(f).sha1));
+    }
+}
@@ -0,0 +1,130 @@
+package org.jenkins_ci.update_center.model;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class PluginHistoryTest extends TestCase {
+    private static final String[] GROUP_IDS = {"org.jenkins-ci.plugins", "org.jvnet.hudson.plugins", "com.example"};
+
+    public void testSameHistoryAsAddingOneByOne() {
+        Random r = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<HPI> hpis = new ArrayList<HPI>();
+            int n = r.nextInt(40);
+            for (int i = 0; i < n; i++) {
+                String version = "1." + r.nextInt(15) + (r.nextInt(4) == 0 ? ".0" : "") + (r.nextInt(6) == 0 ? "-beta" : "");
+                hpis.add(new HPI(new GenericArtifactInfo("releases" + r.nextInt(2),
+                        GROUP_IDS[r.nextInt(GROUP_IDS.length)], "sample", version, null, "hpi")));
+            }
+            int split = r.nextInt(n + 1);
+
+            PluginHistory h = new PluginHistory("sample");
+            for (HPI hpi : hpis.subList(0, split)) {
+                h.addArtifact(hpi);
+            }
+            h.addArtifacts(hpis.subList(split, n));
+
+            assertEquals(describe(oneByOne(hpis)), describe(h.getArtifacts()));
+        }
+    }
+
+    public void testSubtypesAreKept() {
+        HPI custom = new HPI(new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", "sample", "1.1", null)) {
+        };
+        PluginHistory h = new PluginHistory("sample");
+        h.addArtifact(new HPI(new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", "sample", "1.0", null)));
+        h.addArtifact(custom);
+        assertEquals(2, h.size());
+        assertSame(custom, h.latest());
+        assertNotSame(h.getArtifacts().lastEntry().getValue(), h.getArtifacts().lastEntry().getValue());
+    }
+
+    public void testCatalogRoundTrip() {
+        ArtifactCatalog c = new ArtifactCatalog();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, c.add(new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", "p" + (i % 7),
+                    "1." + i, i % 2 == 0 ? null : "sources", i % 3 == 0 ? null : "hpi")));
+        }
+        GenericArtifactInfo a = c.get(50);
+        assertEquals("org.jenkins-ci.plugins:p1:1.50:hpi", a.toString());
+        assertEquals("releases", a.repository);
+        assertEquals("org.jenkins-ci.plugins:p2:1.51:sources", c.get(51).toString());
+        assertSame(a.groupId, c.get(0).groupId);
+    }
+
+    public void testCatalogKeepsParsedVersions() {
+        ArtifactCatalog c = new ArtifactCatalog();
+        String[] versions = {"1.424.2", "1.0", "0", "2.0-beta-1", "1.10"};
+        for (String v : versions) {
+            c.add(new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", "sample", v, null, "hpi"));
+        }
+        for (int row = 0; row < versions.length; row++) {
+            VersionKey k = c.getVersionKey(row);
+            assertEquals(versions[row], k.toString());
+            assertEquals(0, k.compareTo(VersionKey.of(versions[row])));
+        }
+        assertSame(c.getVersionKey(3), c.getVersionKey(3));
+    }
+
+    public void testRemoveArtifacts() {
+        PluginHistory h = new PluginHistory("sample");
+        for (String v : new String[] {"1.0", "1.1", "1.2-beta", "1.2"}) {
+            h.addArtifact(new HPI(new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", "sample", v, null)));
+        }
+        h.removeArtifacts(new TreeSet<VersionKey>(Arrays.asList(VersionKey.of("1.1"), VersionKey.of("1.2-beta"))));
+        assertEquals(Arrays.asList("1.2", "1.0"), versions(h));
+        assertEquals("1.0", h.findYoungestJenkinsArtifact().getKey().toString());
+    }
+
+    private static List<String> versions(PluginHistory h) {
+        List<String> r = new ArrayList<String>();
+        for (HPI hpi : h.getVersions()) {
+            r.add(hpi.version);
+        }
+        return r;
+    }
+
+    /**
+     * How the history used to be built, one artifact at a time.
+     */
+    private static TreeMap<VersionKey, HPI> oneByOne(List<HPI> hpis) {
+        TreeMap<VersionKey, HPI> artifacts = new TreeMap<VersionKey, HPI>(VersionKey.DESCENDING);
+        for (HPI hpi : hpis) {
+            VersionKey v = VersionKey.of(hpi.version);
+            HPI existing = artifacts.get(v);
+            if (existing == null || !existing.isAuthenticJenkinsArtifact() || hpi.isAuthenticJenkinsArtifact()) {
+                artifacts.put(v, hpi);
+            }
+            VersionKey tippingPoint = null;
+            for (Map.Entry<VersionKey, HPI> e : artifacts.entrySet()) {
+                if (e.getValue().isAuthenticJenkinsArtifact()) {
+                    tippingPoint = e.getKey();
+                }
+            }
+            if (tippingPoint != null) {
+                for (Iterator<HPI> itr = artifacts.headMap(tippingPoint).values().iterator(); itr.hasNext(); ) {
+                    if (!itr.next().isAuthenticJenkinsArtifact()) {
+                        itr.remove();
+                    }
+                }
+            }
+        }
+        return artifacts;
+    }
+
+    private static List<String> describe(TreeMap<VersionKey, HPI> artifacts) {
+        List<String> r = new ArrayList<String>();
+        for (HPI hpi : artifacts.values()) {
+            r.add(hpi.artifact.repository + "/" + hpi.artifact);
+        }
+        return r;
+    }
+}
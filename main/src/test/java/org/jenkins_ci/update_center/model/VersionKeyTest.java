@@ -0,0 +1,28 @@
+package org.jenkins_ci.update_center.model;
+
+import hudson.util.VersionNumber;
+import junit.framework.TestCase;
+
+public class VersionKeyTest extends TestCase {
+    private static final String[] VERSIONS = {
+            "1", "1.0", "1.0.0", "1.0.1", "1.1", "1.01", "1.10", "1.2", "1.2-beta-1", "1.2-SNAPSHOT", "1.2.0.1",
+            "1.395", "1.395.1", "1.396", "1.424.2", "2.0-alpha", "2.0", "10.0", "0.9", "1.2.3.4.5",
+            "1234567890.1", "1.0-rc1", "1..2", "1.2a"
+    };
+
+    public void testSameOrderAsVersionNumber() {
+        for (String a : VERSIONS) {
+            for (String b : VERSIONS) {
+                int expected = Integer.signum(new VersionNumber(a).compareTo(new VersionNumber(b)));
+                assertEquals(a + " vs " + b, expected, Integer.signum(VersionKey.of(a).compareTo(VersionKey.of(b))));
+                assertEquals(a + " vs " + b, expected == 0, VersionKey.of(a).equals(VersionKey.of(b)));
+            }
+        }
+    }
+
+    public void testTrailingZeros() {
+        assertEquals(VersionKey.of("1.0.0").hashCode(), VersionKey.of("1").hashCode());
+        assertEquals("1.0.0", VersionKey.of("1.0.0").toString());
+        assertTrue(VersionKey.DESCENDING.compare(VersionKey.of("1.10"), VersionKey.of("1.9")) < 0);
+    }
+}
@@ -0,0 +1,69 @@
+package org.jenkins_ci.update_center.model;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class WikiExcerptTest extends TestCase {
+    private static final Pattern EXCERPT_PATTERN =
+            Pattern.compile("\\{excerpt(?::hidden(?:=true)?)?\\}\\s*(.+)\\{excerpt\\}", Pattern.DOTALL);
+    private static final Pattern HYPERLINK_PATTERN = Pattern.compile("\\[([^|\\]]+)\\|([^|\\]]+)(|([^]])+)?\\]");
+    private static final Pattern NEWLINE_PATTERN = Pattern.compile("(?:\\r\\n|\\n)");
+
+    private static final String[] TOKENS = {
+            "{excerpt}", "{excerpt:hidden}", "{excerpt:hidden=true}", "{excerpt:other}", "{excerpt", "{", "}",
+            "[", "]", "|", " ", "\n", "\r\n", "\r", "\t", "a", "b", "$1", "\\", "http://example.org/",
+    };
+
+    public void testPages() {
+        check("{excerpt}\n  This plugin integrates [Sample|http://example.org/] with Jenkins.{excerpt}\nh1. Usage");
+        check("{excerpt:hidden=true}Adds [Git|http://git-scm.com/|Git home] support.\r\nSee [docs].{excerpt}");
+        check("Intro\n{excerpt:hidden}Shows a [JIRA link|JENKINS-123] and [two|http://a|b|c] links{excerpt} and"
+                + " a second {excerpt}");
+        check("{excerpt} \n{excerpt}");
+        check("{excerpt}{excerpt}");
+        check("{excerpt}x{excerpt}");
+        check("No excerpt at all, just [a|link].");
+    }
+
+    public void testSameAsRegularExpressions() {
+        Random r = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int n = r.nextInt(25); n > 0; n--) {
+                b.append(TOKENS[r.nextInt(TOKENS.length)]);
+            }
+            check(b.toString());
+        }
+    }
+
+    public void testLargePagesAreFast() {
+        StringBuilder b = new StringBuilder("{excerpt}");
+        for (int i = 0; i < 100000; i++) {
+            b.append("{excerpt:hidden}[a|b|");
+        }
+        long start = System.currentTimeMillis();
+        assertNull(WikiExcerpt.toHtml(b.toString()));
+        b.append("{excerpt}");
+        assertEquals(2100000, WikiExcerpt.toHtml(b.toString()).length());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private static void check(String content) {
+        assertEquals(content, regex(content), WikiExcerpt.toHtml(content));
+    }
+
+    /**
+     * How the excerpt used to be extracted.
+     */
+    private static String regex(String content) {
+        Matcher m = EXCERPT_PATTERN.matcher(content);
+        if (!m.find()) {
+            return null;
+        }
+        String oneLiner = NEWLINE_PATTERN.matcher(m.group(1)).replaceAll(" ");
+        return HYPERLINK_PATTERN.matcher(oneLiner).replaceAll("<a href='$2'>$1</a>");
+    }
+}
@@ -0,0 +1,17 @@
+package org.jenkins_ci.update_center.repo;
+
+import junit.framework.TestCase;
+import org.apache.http.HttpHost;
+
+import java.net.URI;
+
+public class ArtifactoryRepositoryImplTest extends TestCase {
+    public void testTargetHost() {
+        assertEquals(new HttpHost("repo.jenkins-ci.org", 80, "http"),
+                ArtifactoryRepositoryImpl.targetHost(URI.create("http://repo.jenkins-ci.org")));
+        assertEquals(new HttpHost("repo.example.org", 443, "https"),
+                ArtifactoryRepositoryImpl.targetHost(URI.create("https://repo.example.org")));
+        assertEquals(new HttpHost("localhost", 8443, "https"),
+                ArtifactoryRepositoryImpl.targetHost(URI.create("https://localhost:8443")));
+    }
+}
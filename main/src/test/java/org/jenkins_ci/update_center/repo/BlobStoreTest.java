@@ -0,0 +1,77 @@
+package org.jenkins_ci.update_center.repo;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.model.Checksums;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class BlobStoreTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("blobs", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Serves the same contents for every path, like a release mirrored under several group IDs.
+     */
+    private static class Mirror implements LocalRepository.Downloader {
+        int downloads;
+
+        public Checksums download(String path, File to) throws IOException {
+            downloads++;
+            OutputStream out = new FileOutputStream(to);
+            try {
+                return Checksums.copy(new ByteArrayInputStream("contents".getBytes("US-ASCII")), out);
+            } finally {
+                out.close();
+            }
+        }
+
+        public Checksums checksums(String path) {
+            return null;
+        }
+    }
+
+    public void testSameContentsStoredOnce() throws Exception {
+        BlobStore blobs = new BlobStore(new File(dir, "blobs"));
+        LocalRepository repo = new LocalRepository(new File(dir, "repo"));
+        repo.setBlobStore(blobs);
+        Mirror mirror = new Mirror();
+
+        File a = repo.resolve("org/example/a/1.0/a-1.0.hpi", mirror);
+        File b = repo.resolve("com/example/a/1.0/a-1.0.hpi", mirror);
+        assertEquals(2, mirror.downloads);
+        assertEquals("contents", FileUtils.readFileToString(b, "US-ASCII"));
+        assertEquals(1, FileUtils.listFiles(new File(dir, "blobs"), null, true).size());
+        assertNotNull(Checksums.read(a));
+        assertNotNull(Checksums.read(b));
+
+        // the download layout links to the same blob
+        String sha256 = Checksums.read(a).sha256;
+        File staged = new File(dir, "download/plugins/a/1.0/a.hpi");
+        assertTrue(blobs.link(sha256, staged));
+        assertEquals("contents", FileUtils.readFileToString(staged, "US-ASCII"));
+
+        assertEquals(0, blobs.gc());
+        a.delete();
+        b.delete();
+        assertEquals(0, blobs.gc());
+        staged.delete();
+        assertEquals(1, blobs.gc());
+        assertFalse(blobs.link(sha256, staged));
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkins_ci.update_center.repo;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.model.Checksums;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalRepositoryTest extends TestCase {
+    private static final String PATH = "org/example/a/1.0/a-1.0.hpi";
+
+    private File dir;
+
+    /**
+     * Serves "contents" for every path, slowly.
+     */
+    private static class Server implements LocalRepository.Downloader {
+        final AtomicInteger downloads = new AtomicInteger();
+        long delay = 50;
+
+        public Checksums download(String path, File to) throws IOException {
+            downloads.incrementAndGet();
+            OutputStream out = new FileOutputStream(to);
+            try {
+                Checksums c = Checksums.copy(new ByteArrayInputStream("contents".getBytes("US-ASCII")), out);
+                Thread.sleep(delay);
+                return c;
+            } catch (InterruptedException e) {
+                throw new IOException(e.toString());
+            } finally {
+                out.close();
+            }
+        }
+
+        public Checksums checksums(String path) {
+            return new Checksums("4a756ca07e9487f482465a99e8286abc86ba4dc7", null);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("local", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testDownloadedOnce() throws Exception {
+        final LocalRepository repo = new LocalRepository(dir);
+        final Server server = new Server();
+        final List<Object> results = new ArrayList<Object>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    Object r;
+                    try {
+                        r = repo.resolve(PATH, server);
+                    } catch (IOException e) {
+                        r = e;
+                    }
+                    synchronized (results) {
+                        results.add(r);
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, server.downloads.get());
+        for (Object r : results) {
+            assertEquals(new File(dir, PATH), r);
+        }
+        assertEquals("contents", FileUtils.readFileToString(new File(dir, PATH), "US-ASCII"));
+        // one lock file for the directory, not one per artifact
+        assertFalse(new File(dir, PATH + ".lock").exists());
+        assertTrue(new File(new File(dir, PATH).getParentFile(), LocalRepository.LOCK_FILE).exists());
+    }
+
+    public void testOtherDirectoriesAreNotHeldUp() throws Exception {
+        final LocalRepository repo = new LocalRepository(dir);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Server blocked = new Server() {
+            @Override
+            public Checksums download(String path, File to) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                return super.download(path, to);
+            }
+        };
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    repo.resolve(PATH, blocked);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        try {
+            Server server = new Server();
+            server.delay = 0;
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 300; i++) {
+                // would have shared a lock with the blocked download for some of these
+                String path = "org/example/b" + i + "/1.0/b" + i + "-1.0.pom";
+                assertEquals(new File(dir, path), repo.resolve(path, server));
+            }
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            release.countDown();
+            t.join();
+        }
+    }
+
+    public void testUntrustedFileIsChecked() throws Exception {
+        LocalRepository repo = new LocalRepository(dir);
+        Server server = new Server();
+        File f = new File(dir, PATH);
+
+        // left by an interrupted download
+        FileUtils.writeStringToFile(f, "cont", "US-ASCII");
+        assertEquals(f, repo.resolve(PATH, server));
+        assertEquals(1, server.downloads.get());
+        assertEquals("contents", FileUtils.readFileToString(f, "US-ASCII"));
+
+        // complete, but without checksums
+        new File(f.getPath() + ".sha1").delete();
+        assertEquals(f, repo.resolve(PATH, server));
+        assertEquals(1, server.downloads.get());
+        assertNotNull(Checksums.read(f));
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkins_ci.update_center.repo;
+
+import junit.framework.TestCase;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HudsonWar;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+public class PrefetchingMavenRepositoryTest extends TestCase {
+    /**
+     * Records what it resolves, and holds up resolving "slow" until released.
+     */
+    private static class Recording extends MavenRepository {
+        final List<String> resolved = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch release = new CountDownLatch(1);
+        int failures;
+
+        @Override
+        public File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+            if (a.artifactId.equals("slow")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+            }
+            synchronized (this) {
+                if (failures > 0) {
+                    failures--;
+                    throw new IOException("failed");
+                }
+            }
+            resolved.add(a.artifactId + "." + type);
+            return new File(a.artifactId + "." + type);
+        }
+
+        @Override
+        protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) {
+        }
+
+        @Override
+        protected void listHudsonPlugins(Map<String, PluginHistory> plugins) {
+        }
+    }
+
+    private static GenericArtifactInfo artifact(String artifactId) {
+        return new GenericArtifactInfo("releases", "org.jenkins-ci.plugins", artifactId, "1.0", null, "hpi");
+    }
+
+    public void testResolvesOnce() throws Exception {
+        Recording base = new Recording();
+        PrefetchingMavenRepository repo = new PrefetchingMavenRepository(base, 2, 10);
+        repo.prefetch(artifact("a"), "hpi", null);
+        repo.prefetch(artifact("a"), "pom", null);
+        repo.prefetch(artifact("a"), "hpi", null);
+        assertEquals(new File("a.hpi"), repo.resolve(artifact("a")));
+        assertEquals(new File("a.hpi"), repo.resolve(artifact("a")));
+        assertEquals(new File("a.pom"), repo.resolvePOM(artifact("a")));
+        assertEquals(2, base.resolved.size());
+    }
+
+    public void testDropsWhenQueueIsFull() throws Exception {
+        Recording base = new Recording();
+        PrefetchingMavenRepository repo = new PrefetchingMavenRepository(base, 1, 1);
+        repo.prefetch(artifact("slow"), "hpi", null); // taken by the thread
+        repo.prefetch(artifact("b"), "hpi", null); // waits in the queue
+        repo.prefetch(artifact("c"), "hpi", null); // dropped
+
+        // a waiting prefetch is run by the one who needs it, and a dropped one is simply resolved
+        assertEquals(new File("b.hpi"), repo.resolve(artifact("b")));
+        assertEquals(new File("c.hpi"), repo.resolve(artifact("c")));
+        assertEquals(2, base.resolved.size());
+
+        base.release.countDown();
+        assertEquals(new File("slow.hpi"), repo.resolve(artifact("slow")));
+        assertEquals(3, base.resolved.size());
+    }
+
+    public void testFailureIsRetried() throws Exception {
+        Recording base = new Recording();
+        base.failures = 1;
+        PrefetchingMavenRepository repo = new PrefetchingMavenRepository(base, 1, 10);
+        repo.prefetch(artifact("a"), "hpi", null);
+        assertEquals(new File("a.hpi"), repo.resolve(artifact("a")));
+        assertEquals(1, base.resolved.size());
+    }
+}
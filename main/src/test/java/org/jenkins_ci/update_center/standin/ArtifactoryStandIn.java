@@ -0,0 +1,861 @@
+package org.jenkins_ci.update_center.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded HTTP server that answers the subset of the Artifactory REST API used by
+ * {@link org.jenkins_ci.update_center.repo.ArtifactoryRepositoryImpl}, so that the generator can be exercised and
+ * benchmarked without repo.jenkins-ci.org.
+ * <p/>
+ * Artifacts are served from a directory that contains one sub-directory per repository key, each in the Maven
+ * repository layout. Virtual repositories (by default {@code public}) aggregate all of them. Latency, bandwidth and
+ * error rate can be injected to reproduce the behavior of a slow or flaky remote.
+ * <p/>
+ * Supported calls:
+ * <ul>
+ * <li>{@code GET /api/search/artifact?name=&repos=}</li>
+ * <li>{@code GET /api/search/gavc?g=&a=&v=&c=&repos=}</li>
+ * <li>{@code POST /api/search/aql} with {@code items.find(...)} queries</li>
+ * <li>{@code GET /api/storage/<repo>/<path>} for file info and checksums</li>
+ * <li>{@code GET|HEAD /<repo>/<path>} for downloads, honoring single {@code Range} requests and sending the
+ * {@code X-Checksum-*} headers</li>
+ * </ul>
+ */
+public class ArtifactoryStandIn {
+    private final File root;
+
+    /**
+     * Virtual repository keys, which aggregate all the local repositories under {@link #root}.
+     */
+    private final List<String> virtualRepositories = new ArrayList<String>(Collections.singletonList("public"));
+
+    /**
+     * Everything served, indexed at start up.
+     */
+    private volatile List<Item> items = Collections.emptyList();
+
+    private final Map<File, Checksums> checksums = new ConcurrentHashMap<File, Checksums>();
+
+    private long latency;
+    private long latencyJitter;
+    private long bytesPerSecond;
+    private double errorRate;
+    /**
+     * The {@code Authorization} header that requests must have, if any.
+     */
+    private String authorization;
+    private final Random random = new Random(0);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ArtifactoryStandIn(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Delays every response by the given number of milliseconds, plus a random jitter in {@code [0,jitter)}.
+     */
+    public ArtifactoryStandIn withLatency(long millis, long jitter) {
+        this.latency = millis;
+        this.latencyJitter = jitter;
+        return this;
+    }
+
+    /**
+     * Caps the transfer rate of each response body. 0 means unlimited.
+     */
+    public ArtifactoryStandIn withBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of requests with 503.
+     */
+    public ArtifactoryStandIn withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Seeds the random source used for jitter and error injection, so that runs are reproducible.
+     */
+    public ArtifactoryStandIn withSeed(long seed) {
+        synchronized (random) {
+            random.setSeed(seed);
+        }
+        return this;
+    }
+
+    /**
+     * Answers 401 to requests without these credentials, in Basic authentication.
+     */
+    public ArtifactoryStandIn withCredentials(String username, String password) {
+        try {
+            byte[] credentials = (username + ":" + password).getBytes("UTF-8");
+            this.authorization = "Basic " + new String(Base64.encodeBase64(credentials), "US-ASCII");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    public ArtifactoryStandIn withVirtualRepository(String key) {
+        virtualRepositories.add(key);
+        return this;
+    }
+
+    /**
+     * Starts serving on the given port. 0 picks a free port.
+     */
+    public ArtifactoryStandIn start(int port) throws IOException {
+        reindex();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    send(exchange, 500, e.toString());
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Base URL to pass to {@code ArtifactoryRepositoryImpl} or {@code Main -repoUrl}.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    /**
+     * Rescans {@link #root}. Needed when files are added after {@link #start(int)}.
+     */
+    public void reindex() {
+        List<Item> r = new ArrayList<Item>();
+        File[] repos = root.listFiles();
+        if (repos != null) {
+            for (File repo : repos) {
+                if (repo.isDirectory()) {
+                    collect(repo.getName(), "", repo, r);
+                }
+            }
+        }
+        items = r;
+    }
+
+    private void collect(String repo, String path, File dir, List<Item> r) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            String p = path.length() == 0 ? child.getName() : path + "/" + child.getName();
+            if (child.isDirectory()) {
+                collect(repo, p, child, r);
+            } else {
+                r.add(new Item(repo, p, child));
+            }
+        }
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        injectLatency();
+        if (injectError()) {
+            send(exchange, 503, "Injected failure");
+            return;
+        }
+        if (authorization != null
+                && !authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"Artifactory Realm\"");
+            send(exchange, 401, "Unauthorized");
+            return;
+        }
+
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (path.equals("/api/search/artifact")) {
+            searchArtifact(exchange, query);
+        } else if (path.equals("/api/search/gavc")) {
+            searchGavc(exchange, query);
+        } else if (path.equals("/api/search/aql")) {
+            searchAql(exchange);
+        } else if (path.startsWith("/api/storage/")) {
+            storageInfo(exchange, decode(path.substring("/api/storage/".length())));
+        } else {
+            download(exchange, decode(path.substring(1)));
+        }
+    }
+
+    private void searchArtifact(HttpExchange exchange, Map<String, String> query) throws IOException {
+        Pattern name = glob(query.get("name"));
+        List<String> repos = split(query.get("repos"));
+        JSONArray results = new JSONArray();
+        for (Item item : items) {
+            if (item.matchesRepo(repos) && name.matcher(item.file.getName()).matches()) {
+                results.add(item.toStorageUri(exchange));
+            }
+        }
+        sendResults(exchange, results);
+    }
+
+    private void searchGavc(HttpExchange exchange, Map<String, String> query) throws IOException {
+        Pattern g = glob(query.get("g"));
+        Pattern a = glob(query.get("a"));
+        Pattern v = glob(query.get("v"));
+        Pattern c = glob(query.get("c"));
+        List<String> repos = split(query.get("repos"));
+        JSONArray results = new JSONArray();
+        for (Item item : items) {
+            if (!item.matchesRepo(repos) || item.artifactId == null) {
+                continue;
+            }
+            if (g.matcher(item.groupId).matches() && a.matcher(item.artifactId).matches()
+                    && v.matcher(item.version).matches()
+                    && (query.get("c") == null || (item.classifier != null && c.matcher(item.classifier).matches()))) {
+                results.add(item.toStorageUri(exchange));
+            }
+        }
+        sendResults(exchange, results);
+    }
+
+    /**
+     * Understands {@code items.find({...})} with an optional {@code .limit(n)}. Criteria support plain values and the
+     * {@code $eq}, {@code $ne}, {@code $match} and {@code $nmatch} operators on {@code repo}, {@code path},
+     * {@code name} and {@code size}, combined with {@code $and}/{@code $or}.
+     */
+    private void searchAql(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, "AQL requires POST");
+            return;
+        }
+        String aql = IOUtils.toString(exchange.getRequestBody(), "UTF-8").trim();
+        if (!aql.startsWith("items.find(")) {
+            send(exchange, 400, "Only items.find() is supported");
+            return;
+        }
+        int start = aql.indexOf('{');
+        int end = findClosingBrace(aql, start);
+        if (start < 0 || end < 0) {
+            send(exchange, 400, "Malformed AQL");
+            return;
+        }
+        JSONObject criteria = JSONObject.fromObject(aql.substring(start, end + 1));
+        int limit = Integer.MAX_VALUE;
+        Matcher m = AQL_LIMIT.matcher(aql.substring(end));
+        if (m.find()) {
+            limit = Integer.parseInt(m.group(1));
+        }
+
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        JSONArray results = new JSONArray();
+        for (Item item : items) {
+            if (results.size() >= limit) {
+                break;
+            }
+            if (item.matches(criteria)) {
+                JSONObject o = new JSONObject();
+                o.put("repo", item.repo);
+                int slash = item.path.lastIndexOf('/');
+                o.put("path", slash < 0 ? "." : item.path.substring(0, slash));
+                o.put("name", item.file.getName());
+                o.put("type", "file");
+                o.put("size", item.file.length());
+                String ts = iso.format(new Date(item.file.lastModified()));
+                o.put("created", ts);
+                o.put("modified", ts);
+                Checksums sums = checksumsOf(item.file);
+                o.put("actual_sha1", sums.sha1);
+                o.put("actual_md5", sums.md5);
+                results.add(o);
+            }
+        }
+        JSONObject range = new JSONObject();
+        range.put("start_pos", 0);
+        range.put("end_pos", results.size());
+        range.put("total", results.size());
+        JSONObject root = new JSONObject();
+        root.put("results", results);
+        root.put("range", range);
+        sendJson(exchange, root);
+    }
+
+    private static int findClosingBrace(String s, int start) {
+        if (start < 0) {
+            return -1;
+        }
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (inString) {
+                if (ch == '\\') {
+                    i++;
+                } else if (ch == '"') {
+                    inString = false;
+                }
+            } else if (ch == '"') {
+                inString = true;
+            } else if (ch == '{') {
+                depth++;
+            } else if (ch == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void storageInfo(HttpExchange exchange, String path) throws IOException {
+        File f = locate(path);
+        if (f == null) {
+            send(exchange, 404, "Not found: " + path);
+            return;
+        }
+        Checksums sums = checksumsOf(f);
+        JSONObject o = new JSONObject();
+        o.put("repo", path.substring(0, path.indexOf('/')));
+        o.put("path", path.substring(path.indexOf('/')));
+        o.put("downloadUri", baseUrl(exchange) + "/" + path);
+        o.put("size", String.valueOf(f.length()));
+        JSONObject c = new JSONObject();
+        c.put("sha1", sums.sha1);
+        c.put("md5", sums.md5);
+        c.put("sha256", sums.sha256);
+        o.put("checksums", c);
+        o.put("originalChecksums", c);
+        sendJson(exchange, o);
+    }
+
+    private void download(HttpExchange exchange, String path) throws IOException {
+        File f = locate(path);
+        if (f == null) {
+            send(exchange, 404, "Not found: " + path);
+            return;
+        }
+        Checksums sums = checksumsOf(f);
+        long length = f.length();
+        long from = 0;
+        long to = length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            Matcher m = RANGE.matcher(range.trim());
+            if (m.matches()) {
+                if (m.group(1).length() == 0) {
+                    // suffix range: the last N bytes
+                    from = Math.max(0, length - Long.parseLong(m.group(2)));
+                } else {
+                    from = Long.parseLong(m.group(1));
+                    if (m.group(2).length() > 0) {
+                        to = Math.min(to, Long.parseLong(m.group(2)));
+                    }
+                }
+                if (from >= length || from > to) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                    send(exchange, 416, "Requested range not satisfiable");
+                    return;
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + length);
+            }
+            // multiple ranges are legal to ignore, in which case the whole entity is sent
+        }
+
+        SimpleDateFormat http = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        http.setTimeZone(TimeZone.getTimeZone("GMT"));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("Last-Modified", http.format(new Date(f.lastModified())));
+        exchange.getResponseHeaders().set("ETag", sums.sha1);
+        exchange.getResponseHeaders().set("X-Checksum-Sha1", sums.sha1);
+        exchange.getResponseHeaders().set("X-Checksum-Md5", sums.md5);
+        exchange.getResponseHeaders().set("X-Checksum-Sha256", sums.sha256);
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+
+        long count = to - from + 1;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(count));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, count);
+        OutputStream out = throttle(exchange.getResponseBody());
+        InputStream in = new FileInputStream(f);
+        try {
+            long skip = from;
+            while (skip > 0) {
+                long n = in.skip(skip);
+                if (n <= 0) {
+                    throw new IOException("Unable to skip to " + from + " in " + f);
+                }
+                skip -= n;
+            }
+            byte[] buf = new byte[8192];
+            while (count > 0) {
+                int len = in.read(buf, 0, (int) Math.min(buf.length, count));
+                if (len < 0) {
+                    break;
+                }
+                out.write(buf, 0, len);
+                count -= len;
+            }
+            out.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Finds the file for {@code <repo>/<path>}, looking into all the local repositories if the key is virtual.
+     */
+    private File locate(String path) {
+        int slash = path.indexOf('/');
+        if (slash <= 0 || path.contains("..")) {
+            return null;
+        }
+        String repo = path.substring(0, slash);
+        String rest = path.substring(slash + 1);
+        if (virtualRepositories.contains(repo)) {
+            File[] repos = root.listFiles();
+            if (repos != null) {
+                for (File r : repos) {
+                    File f = new File(r, rest);
+                    if (f.isFile()) {
+                        return f;
+                    }
+                }
+            }
+            return null;
+        }
+        File f = new File(new File(root, repo), rest);
+        return f.isFile() ? f : null;
+    }
+
+    private Checksums checksumsOf(File f) throws IOException {
+        Checksums c = checksums.get(f);
+        if (c == null || c.lastModified != f.lastModified()) {
+            c = new Checksums(f);
+            checksums.put(f, c);
+        }
+        return c;
+    }
+
+    private void injectLatency() {
+        long delay = latency;
+        if (latencyJitter > 0) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * latencyJitter);
+            }
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean injectError() {
+        if (errorRate <= 0) {
+            return false;
+        }
+        synchronized (random) {
+            return random.nextDouble() < errorRate;
+        }
+    }
+
+    private OutputStream throttle(OutputStream out) {
+        if (bytesPerSecond <= 0) {
+            return out;
+        }
+        return new ThrottledOutputStream(out, bytesPerSecond);
+    }
+
+    private void sendResults(HttpExchange exchange, JSONArray results) throws IOException {
+        JSONObject o = new JSONObject();
+        o.put("results", results);
+        sendJson(exchange, o);
+    }
+
+    private void sendJson(HttpExchange exchange, JSONObject o) throws IOException {
+        byte[] body = o.toString().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = throttle(exchange.getResponseBody());
+        out.write(body);
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String baseUrl(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null) {
+            host = "127.0.0.1:" + exchange.getLocalAddress().getPort();
+        }
+        return "http://" + host;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> r = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return r;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                r.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return r;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<String> split(String csv) {
+        if (csv == null || csv.length() == 0) {
+            return null;
+        }
+        return Arrays.asList(csv.split(","));
+    }
+
+    /**
+     * Artifactory style wildcard, where {@code *} matches anything and {@code ?} a single character. Null matches
+     * everything.
+     */
+    static Pattern glob(String glob) {
+        if (glob == null) {
+            return MATCH_ALL;
+        }
+        StringBuilder b = new StringBuilder();
+        for (String piece : glob.split("((?<=[*?])|(?=[*?]))")) {
+            if (piece.equals("*")) {
+                b.append(".*");
+            } else if (piece.equals("?")) {
+                b.append('.');
+            } else if (piece.length() > 0) {
+                b.append(Pattern.quote(piece));
+            }
+        }
+        return Pattern.compile(b.toString());
+    }
+
+    private static final Pattern MATCH_ALL = Pattern.compile(".*", Pattern.DOTALL);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern AQL_LIMIT = Pattern.compile("\\.limit\\((\\d+)\\)");
+
+    /**
+     * A file in one of the local repositories, with its coordinates parsed from the Maven layout.
+     */
+    private static final class Item {
+        final String repo;
+        final String path;
+        final File file;
+        String groupId;
+        String artifactId;
+        String version;
+        String classifier;
+
+        Item(String repo, String path, File file) {
+            this.repo = repo;
+            this.path = path;
+            this.file = file;
+
+            String[] segments = path.split("/");
+            if (segments.length >= 4) {
+                artifactId = segments[segments.length - 3];
+                version = segments[segments.length - 2];
+                StringBuilder g = new StringBuilder();
+                for (int i = 0; i < segments.length - 3; i++) {
+                    if (i > 0) {
+                        g.append('.');
+                    }
+                    g.append(segments[i]);
+                }
+                groupId = g.toString();
+
+                String prefix = artifactId + "-" + version + "-";
+                String name = file.getName();
+                if (name.startsWith(prefix) && name.indexOf('.', prefix.length()) > 0) {
+                    classifier = name.substring(prefix.length(), name.indexOf('.', prefix.length()));
+                }
+            }
+        }
+
+        boolean matchesRepo(List<String> repos) {
+            return repos == null || repos.contains(repo);
+        }
+
+        JSONObject toStorageUri(HttpExchange exchange) {
+            JSONObject o = new JSONObject();
+            o.put("uri", baseUrl(exchange) + "/api/storage/" + repo + "/" + path);
+            return o;
+        }
+
+        boolean matches(JSONObject criteria) {
+            for (Iterator<?> itr = criteria.keys(); itr.hasNext(); ) {
+                String key = (String) itr.next();
+                Object value = criteria.get(key);
+                if (key.equals("$and") || key.equals("$or")) {
+                    boolean or = key.equals("$or");
+                    boolean any = false;
+                    boolean all = true;
+                    for (Object clause : (JSONArray) value) {
+                        boolean m = matches((JSONObject) clause);
+                        any |= m;
+                        all &= m;
+                    }
+                    if (or ? !any : !all) {
+                        return false;
+                    }
+                } else if (!matchesField(field(key), value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String field(String key) {
+            if (key.equals("repo")) {
+                return repo;
+            }
+            if (key.equals("name")) {
+                return file.getName();
+            }
+            if (key.equals("path")) {
+                int slash = path.lastIndexOf('/');
+                return slash < 0 ? "." : path.substring(0, slash);
+            }
+            if (key.equals("size")) {
+                return String.valueOf(file.length());
+            }
+            if (key.equals("type")) {
+                return "file";
+            }
+            throw new IllegalArgumentException("Unsupported AQL field: " + key);
+        }
+
+        private static boolean matchesField(String actual, Object condition) {
+            if (!(condition instanceof JSONObject)) {
+                return actual.equals(String.valueOf(condition));
+            }
+            JSONObject ops = (JSONObject) condition;
+            for (Iterator<?> itr = ops.keys(); itr.hasNext(); ) {
+                String op = (String) itr.next();
+                String operand = ops.getString(op);
+                boolean ok;
+                if (op.equals("$eq")) {
+                    ok = actual.equals(operand);
+                } else if (op.equals("$ne")) {
+                    ok = !actual.equals(operand);
+                } else if (op.equals("$match")) {
+                    ok = glob(operand).matcher(actual).matches();
+                } else if (op.equals("$nmatch")) {
+                    ok = !glob(operand).matcher(actual).matches();
+                } else {
+                    throw new IllegalArgumentException("Unsupported AQL operator: " + op);
+                }
+                if (!ok) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Checksums {
+        final long lastModified;
+        final String sha1;
+        final String md5;
+        final String sha256;
+
+        Checksums(File f) throws IOException {
+            lastModified = f.lastModified();
+            try {
+                MessageDigest sha1 = MessageDigest.getInstance("SHA1");
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+                FileInputStream in = new FileInputStream(f);
+                try {
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = in.read(buf)) >= 0) {
+                        sha1.update(buf, 0, len);
+                        md5.update(buf, 0, len);
+                        sha256.update(buf, 0, len);
+                    }
+                } finally {
+                    in.close();
+                }
+                this.sha1 = new String(Hex.encodeHex(sha1.digest()));
+                this.md5 = new String(Hex.encodeHex(md5.digest()));
+                this.sha256 = new String(Hex.encodeHex(sha256.digest()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Paces writes so that the average rate stays under the given number of bytes per second.
+     */
+    private static final class ThrottledOutputStream extends FilterOutputStream {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long written;
+
+        ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            pace(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // write in small slices so that a large buffer doesn't produce bursts
+            int slice = (int) Math.max(1, Math.min(8192, bytesPerSecond / 10));
+            while (len > 0) {
+                int n = Math.min(slice, len);
+                out.write(b, off, n);
+                pace(n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void pace(int n) throws IOException {
+            written += n;
+            long due = start + written * 1000000000L / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                } catch (InterruptedException e) {
+                    throw new java.io.InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    static class Options {
+        @Option(name = "-root", required = true,
+                usage = "Directory with one Maven layout repository per sub-directory")
+        public File root;
+
+        @Option(name = "-port", usage = "Port to listen to. 0 picks a free one")
+        public int port = 8081;
+
+        @Option(name = "-latency", usage = "Milliseconds added to every response")
+        public long latency;
+
+        @Option(name = "-jitter", usage = "Random milliseconds added on top of -latency")
+        public long jitter;
+
+        @Option(name = "-bandwidth", usage = "Bytes per second per response. 0 for unlimited")
+        public long bandwidth;
+
+        @Option(name = "-errorRate", usage = "Fraction of requests answered with 503")
+        public double errorRate;
+
+        @Option(name = "-seed", usage = "Random seed for jitter and errors")
+        public long seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        CmdLineParser p = new CmdLineParser(options);
+        try {
+            p.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            p.printUsage(System.err);
+            System.exit(1);
+        }
+        ArtifactoryStandIn server = new ArtifactoryStandIn(options.root)
+                .withLatency(options.latency, options.jitter)
+                .withBandwidth(options.bandwidth)
+                .withErrorRate(options.errorRate)
+                .withSeed(options.seed)
+                .start(options.port);
+        System.out.println("Serving " + server.items.size() + " files from " + options.root + " at "
+                + server.getUrl());
+    }
+}
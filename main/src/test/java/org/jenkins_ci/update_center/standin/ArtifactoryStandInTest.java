@@ -0,0 +1,123 @@
+package org.jenkins_ci.update_center.standin;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.HudsonWar;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+import org.jenkins_ci.update_center.repo.ArtifactoryRepositoryImpl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Runs {@link ArtifactoryRepositoryImpl} against {@link ArtifactoryStandIn}.
+ */
+public class ArtifactoryStandInTest extends TestCase {
+    private File dir;
+    private ArtifactoryStandIn server;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("standin", "");
+        dir.delete();
+        File repo = new File(dir, "repo/releases");
+        writeHpi(new File(repo, "org/jenkins-ci/plugins/foo/1.0/foo-1.0.hpi"));
+        writeHpi(new File(repo, "org/jenkins-ci/plugins/foo/1.1/foo-1.1.hpi"));
+        FileUtils.writeStringToFile(new File(repo, "org/jenkins-ci/plugins/foo/1.1/foo-1.1.pom"), "<project/>", "UTF-8");
+        writeHpi(new File(repo, "org/jenkins-ci/main/jenkins-war/1.450/jenkins-war-1.450.war"));
+        server = new ArtifactoryStandIn(new File(dir, "repo")).start(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testDiscoveryAndResolution() throws Exception {
+        ArtifactoryRepositoryImpl r = new ArtifactoryRepositoryImpl(server.getUrl());
+        r.setLocalRepository(new File(dir, "local"));
+
+        List<PluginHistory> plugins = new ArrayList<PluginHistory>(r.listHudsonPlugins());
+        assertEquals(1, plugins.size());
+        PluginHistory foo = plugins.get(0);
+        assertEquals("foo", foo.artifactId);
+        assertEquals(2, foo.size());
+        HPI latest = foo.latest();
+        assertEquals("1.1", latest.version);
+
+        File hpi = r.resolve(latest.artifact);
+        assertTrue(FileUtils.contentEquals(
+                new File(dir, "repo/releases/org/jenkins-ci/plugins/foo/1.1/foo-1.1.hpi"), hpi));
+        assertNotNull(r.resolvePOM(latest.artifact));
+
+        TreeMap<VersionKey, HudsonWar> wars = r.getHudsonWar();
+        assertEquals(1, wars.size());
+        assertEquals("1.450", wars.firstEntry().getValue().version);
+    }
+
+    public void testCredentialsFollowTheRepositoryUrl() throws Exception {
+        server.withCredentials("alice", "secret");
+        // set in the order of Main's options, before the URL of the stand-in
+        ArtifactoryRepositoryImpl r = new ArtifactoryRepositoryImpl();
+        r.setCredentials("alice", "secret");
+        r.setRepositoryUrl(server.getUrl());
+        r.setLocalRepository(new File(dir, "local"));
+        PluginHistory foo = r.listHudsonPlugins().iterator().next();
+        assertTrue(r.resolve(foo.latest().artifact).exists());
+
+        r.setCredentials("alice", "wrong");
+        assertNull(r.resolvePOM(foo.latest().artifact));
+    }
+
+    public void testRangeAndChecksumHeaders() throws Exception {
+        HttpURLConnection con = (HttpURLConnection) new URL(
+                server.getUrl() + "/public/org/jenkins-ci/plugins/foo/1.0/foo-1.0.hpi").openConnection();
+        con.setRequestProperty("Range", "bytes=0-9");
+        assertEquals(206, con.getResponseCode());
+        assertEquals(10, IOUtils.toByteArray(con.getInputStream()).length);
+        assertEquals(40, con.getHeaderField("X-Checksum-Sha1").length());
+        assertNotNull(con.getHeaderField("X-Checksum-Sha256"));
+    }
+
+    public void testErrorInjection() throws Exception {
+        server.withErrorRate(1.0);
+        HttpURLConnection con = (HttpURLConnection) new URL(
+                server.getUrl() + "/api/search/artifact?name=*.hpi").openConnection();
+        assertEquals(503, con.getResponseCode());
+    }
+
+    public void testAql() throws Exception {
+        HttpURLConnection con = (HttpURLConnection) new URL(server.getUrl() + "/api/search/aql").openConnection();
+        con.setDoOutput(true);
+        con.setRequestMethod("POST");
+        OutputStream out = con.getOutputStream();
+        out.write("items.find({\"repo\":\"releases\",\"name\":{\"$match\":\"*.hpi\"}}).limit(1)".getBytes("UTF-8"));
+        out.close();
+        assertEquals(200, con.getResponseCode());
+        String body = IOUtils.toString(con.getInputStream(), "UTF-8");
+        assertTrue(body, body.contains("\"total\":1"));
+    }
+
+    private static void writeHpi(File f) throws IOException {
+        f.getParentFile().mkdirs();
+        Manifest m = new Manifest();
+        m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        m.getMainAttributes().putValue("Short-Name", "foo");
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(f), m);
+        jar.close();
+    }
+}
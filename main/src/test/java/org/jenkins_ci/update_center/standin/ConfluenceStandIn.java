@@ -0,0 +1,150 @@
+package org.jenkins_ci.update_center.standin;
+
+import hudson.plugins.jira.soap.ConfluenceSoapService;
+import hudson.plugins.jira.soap.RemoteLabel;
+import hudson.plugins.jira.soap.RemotePage;
+import hudson.plugins.jira.soap.RemotePageSummary;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory Confluence that answers the SOAP calls made by
+ * {@link org.jenkins_ci.update_center.ConfluencePluginList}, so that the generator can run without
+ * wiki.jenkins-ci.org.
+ * <p/>
+ * Pages are read from a file with one JSON object per line, holding {@code id}, {@code title}, {@code url},
+ * {@code version}, {@code content} and {@code labels}. The page titled "Plugins" is the parent of all the others.
+ * See {@link SyntheticCatalog} for a generator of such files.
+ */
+public class ConfluenceStandIn implements InvocationHandler {
+    private final Map<String, JSONObject> byTitle = new HashMap<String, JSONObject>();
+    private final Map<Long, JSONObject> byId = new HashMap<Long, JSONObject>();
+    private long latency;
+
+    /**
+     * Number of SOAP calls answered so far.
+     */
+    public final AtomicLong calls = new AtomicLong();
+
+    public ConfluenceStandIn(File pages) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(pages), "UTF-8"));
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                JSONObject page = JSONObject.fromObject(line);
+                byTitle.put(page.getString("title"), page);
+                byId.put(page.getLong("id"), page);
+            }
+        } finally {
+            r.close();
+        }
+        if (!byTitle.containsKey("Plugins")) {
+            throw new IOException("No \"Plugins\" page in " + pages);
+        }
+    }
+
+    /**
+     * Delays every call by the given number of milliseconds, to mimic the round trip to the real wiki.
+     */
+    public ConfluenceStandIn withLatency(long millis) {
+        this.latency = millis;
+        return this;
+    }
+
+    /**
+     * Creates the SOAP service view of this wiki.
+     */
+    public ConfluenceSoapService createService() {
+        return (ConfluenceSoapService) Proxy.newProxyInstance(ConfluenceSoapService.class.getClassLoader(),
+                new Class[]{ConfluenceSoapService.class}, this);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        calls.incrementAndGet();
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+
+        String name = method.getName();
+        if (name.equals("getPage") && args.length == 3) {
+            return toPage(lookup(byTitle.get((String) args[2]), args[2]));
+        }
+        if (name.equals("getPage") && args.length == 2) {
+            return toPage(lookup(byId.get((Long) args[1]), args[1]));
+        }
+        if (name.equals("getChildren")) {
+            long parent = (Long) args[1];
+            List<RemotePageSummary> r = new ArrayList<RemotePageSummary>();
+            if (parent == byTitle.get("Plugins").getLong("id")) {
+                for (JSONObject page : byTitle.values()) {
+                    if (!page.getString("title").equals("Plugins")) {
+                        RemotePageSummary s = new RemotePageSummary();
+                        s.setId(page.getLong("id"));
+                        s.setTitle(page.getString("title"));
+                        s.setUrl(page.getString("url"));
+                        r.add(s);
+                    }
+                }
+            }
+            return r.toArray(new RemotePageSummary[r.size()]);
+        }
+        if (name.equals("getLabelsById")) {
+            JSONObject page = lookup(byId.get((Long) args[1]), args[1]);
+            JSONArray labels = page.optJSONArray("labels");
+            if (labels == null) {
+                return null;
+            }
+            RemoteLabel[] r = new RemoteLabel[labels.size()];
+            for (int i = 0; i < r.length; i++) {
+                r[i] = new RemoteLabel();
+                r[i].setId(i);
+                r[i].setName(labels.getString(i));
+            }
+            return r;
+        }
+        throw new UnsupportedOperationException(name + " is not supported by the stand-in");
+    }
+
+    private static JSONObject lookup(JSONObject page, Object key) throws RemoteException {
+        if (page == null) {
+            throw new RemoteException("No such page: " + key);
+        }
+        return page;
+    }
+
+    /**
+     * Like a SOAP client, hands out a page of its own every time, so that the pages the generator keeps cost it what
+     * they would with the real wiki.
+     */
+    private static RemotePage toPage(JSONObject o) {
+        RemotePage p = new RemotePage();
+        p.setId(o.getLong("id"));
+        p.setTitle(o.getString("title"));
+        p.setUrl(o.getString("url"));
+        p.setVersion(o.getInt("version"));
+        String content = o.optString("content", null);
+        p.setContent(content != null ? new String(content.toCharArray()) : null);
+        return p;
+    }
+}
@@ -0,0 +1,124 @@
+package org.jenkins_ci.update_center.standin;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Listens to the garbage collections of this JVM, for what they freed and for how much the heap held before each.
+ * <p/>
+ * The heap peak is the most the heap held at once, as seen just before each collection or now. Adding up the peaks
+ * of the heap pools instead would add figures from different times, the young generation peaking before every
+ * collection, and so mostly reflect how it is sized. Only the collections from when this class is first used on are
+ * seen.
+ */
+public final class GarbageCollections implements NotificationListener {
+    private static final GarbageCollections INSTANCE = new GarbageCollections();
+
+    private final Set<String> heapPools = new HashSet<String>();
+    private final AtomicLong freed = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong notified = new AtomicLong();
+    private final long collectionsBefore;
+
+    private GarbageCollections() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        collectionsBefore = collectionCount();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    public void handleNotification(Notification n, Object handback) {
+        if (!com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType())) {
+            return;
+        }
+        com.sun.management.GcInfo info = com.sun.management.GarbageCollectionNotificationInfo
+                .from((CompositeData) n.getUserData()).getGcInfo();
+        long before = heapUsed(info.getMemoryUsageBeforeGc());
+        freed.addAndGet(before - heapUsed(info.getMemoryUsageAfterGc()));
+        raisePeak(before);
+        notified.incrementAndGet();
+    }
+
+    private long heapUsed(Map<String, MemoryUsage> pools) {
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> e : pools.entrySet()) {
+            if (heapPools.contains(e.getKey())) {
+                used += e.getValue().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private void raisePeak(long used) {
+        long p;
+        while ((p = peak.get()) < used && !peak.compareAndSet(p, used)) {
+            // raced with another collection
+        }
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Waits a little for the notifications of the collections that already happened, which come asynchronously.
+     */
+    private void catchUp() {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (notified.get() < collectionCount() - collectionsBefore && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated since this class was first used: what the heap holds plus what the collections freed.
+     */
+    public static long allocatedBytes() {
+        INSTANCE.catchUp();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() + INSTANCE.freed.get();
+    }
+
+    /**
+     * Starts over the peak of {@link #peakHeap()}.
+     */
+    public static void resetPeak() {
+        INSTANCE.catchUp();
+        INSTANCE.peak.set(0);
+    }
+
+    /**
+     * The most the heap held at once since the last {@link #resetPeak()}.
+     */
+    public static long peakHeap() {
+        INSTANCE.catchUp();
+        INSTANCE.raisePeak(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        return INSTANCE.peak.get();
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkins_ci.update_center.standin;
+
+import hudson.util.VersionNumber;
+import org.jenkins_ci.update_center.ConfluencePluginList;
+import org.jenkins_ci.update_center.Main;
+import org.jenkins_ci.update_center.repo.ArtifactoryRepositoryImpl;
+import org.jenkins_ci.update_center.repo.BlobStore;
+import org.jenkins_ci.update_center.repo.MavenRepository;
+import org.jenkins_ci.update_center.repo.VersionCappedMavenRepository;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+
+/**
+ * Runs {@link Main} end-to-end against a catalog produced by {@link SyntheticCatalog}, with the repository served by
+ * {@link ArtifactoryStandIn} and the wiki by {@link ConfluenceStandIn}. Nothing leaves the machine.
+ * <p/>
+ * Takes the usual {@link Main} options plus {@code -catalog}. At the end, the elapsed time and the peak heap usage, as
+ * seen by {@link GarbageCollections}, are printed, and optionally appended as a CSV line to the {@code -report} file,
+ * so that runs over catalogs of different sizes can be plotted against each other.
+ */
+public class StandInMain extends Main {
+    @Option(name = "-catalog", required = true, usage = "Directory generated by SyntheticCatalog")
+    public File catalog;
+
+    @Option(name = "-localRepository", usage = "Where downloaded artifacts go. Defaults to <catalog>/local")
+    public File localRepository;
+
+    @Option(name = "-latency", usage = "Milliseconds added to every repository and wiki call")
+    public long latency;
+
+    @Option(name = "-report", usage = "CSV file to append 'catalog,plugins,millis,peakHeapBytes' to")
+    public File report;
+
+    private ArtifactoryStandIn server;
+
+    @Override
+    public void run() throws Exception {
+        server = new ArtifactoryStandIn(new File(catalog, "repo")).withLatency(latency, 0).start(0);
+        try {
+            GarbageCollections.resetPeak();
+            long start = System.currentTimeMillis();
+            super.run();
+            long elapsed = System.currentTimeMillis() - start;
+            long peak = GarbageCollections.peakHeap();
+            System.out.println("Generated in " + elapsed + "ms, peak heap " + (peak >> 20) + "MB");
+            if (report != null) {
+                PrintWriter w = new PrintWriter(new FileWriter(report, true));
+                try {
+                    w.println(catalog + "," + (maxPlugins != null ? maxPlugins : "") + "," + elapsed + "," + peak);
+                } finally {
+                    w.close();
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Override
+    protected MavenRepository createRepository(String repoImpl) throws Exception {
+        ArtifactoryRepositoryImpl r = new ArtifactoryRepositoryImpl(server.getUrl());
+        r.setLocalRepository(localRepository != null ? localRepository : new File(catalog, "local"));
+        if (blobStore != null) {
+            r.setBlobStore(new BlobStore(blobStore));
+        }
+        r.setMaxPlugins(maxPlugins);
+        return cap != null ? new VersionCappedMavenRepository(r, new VersionNumber(cap)) : r;
+    }
+
+    @Override
+    protected ConfluencePluginList createPluginList() throws Exception {
+        return new ConfluencePluginList(
+                new ConfluenceStandIn(new File(catalog, "wiki.jsonl")).withLatency(latency).createService());
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new StandInMain().run(args));
+    }
+}
@@ -0,0 +1,196 @@
+package org.jenkins_ci.update_center.standin;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.model.GenericArtifactInfo;
+import org.jenkins_ci.update_center.model.HudsonWar;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
+import org.jenkins_ci.update_center.repo.MavenRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the generator end-to-end with {@link StandInMain}.
+ */
+public class StandInMainTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("standin", "");
+        dir.delete();
+        SyntheticCatalog c = new SyntheticCatalog();
+        c.out = new File(dir, "catalog");
+        c.plugins = 20;
+        c.versions = 3;
+        c.cores = 2;
+        c.generate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Passes everything on to another repository.
+     */
+    private abstract static class Delegating extends MavenRepository {
+        final MavenRepository base;
+
+        Delegating(MavenRepository base) {
+            this.base = base;
+        }
+
+        @Override
+        public Collection<PluginHistory> listHudsonPlugins() throws IOException {
+            return base.listHudsonPlugins();
+        }
+
+        @Override
+        public TreeMap<VersionKey, HudsonWar> getHudsonWar() throws IOException {
+            return base.getHudsonWar();
+        }
+
+        @Override
+        protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void listHudsonPlugins(Map<String, PluginHistory> plugins) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A repository that can't resolve from several threads at once, and records whether it was asked to.
+     */
+    private static class NotThreadSafe extends Delegating {
+        final AtomicInteger resolving = new AtomicInteger();
+        final AtomicInteger resolved = new AtomicInteger();
+        volatile boolean overlapped;
+
+        NotThreadSafe(MavenRepository base) {
+            super(base);
+        }
+
+        @Override
+        public File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+            if (resolving.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            try {
+                Thread.sleep(1); // so that overlapping calls would be caught
+                resolved.incrementAndGet();
+                return base.resolve(a, type, classifier);
+            } catch (InterruptedException e) {
+                throw new IOException(e.toString());
+            } finally {
+                resolving.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return false;
+        }
+    }
+
+    /**
+     * Hands out a file of its own for everything it resolves, only weakly referenced here, and once the given number
+     * of plugins have been asked for, checks whether the files of the first ones are still referenced elsewhere.
+     */
+    private static class Forgetting extends Delegating {
+        final int plugins;
+        final Map<String, List<WeakReference<File>>> files = new LinkedHashMap<String, List<WeakReference<File>>>();
+        volatile Boolean forgotten;
+
+        Forgetting(MavenRepository base, int plugins) {
+            super(base);
+            this.plugins = plugins;
+        }
+
+        @Override
+        public synchronized File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+            File f = base.resolve(a, type, classifier);
+            if (f == null || a.artifactId.endsWith("-war")) {
+                return f;
+            }
+            f = new File(f.getPath());
+            List<WeakReference<File>> refs = files.get(a.artifactId);
+            if (refs == null) {
+                files.put(a.artifactId, refs = new ArrayList<WeakReference<File>>());
+            }
+            refs.add(new WeakReference<File>(f));
+            if (forgotten == null && files.size() == plugins) {
+                forgotten = firstOnesCleared();
+            }
+            return f;
+        }
+
+        private boolean firstOnesCleared() {
+            for (int attempt = 0; attempt < 10; attempt++) {
+                System.gc();
+                boolean cleared = true;
+                int n = 0;
+                for (List<WeakReference<File>> refs : files.values()) {
+                    if (n++ == plugins / 2) {
+                        break;
+                    }
+                    for (WeakReference<File> ref : refs) {
+                        cleared &= ref.get() == null;
+                    }
+                }
+                if (cleared) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public void testNotThreadSafeRepositoryIsResolvedFromOneThread() throws Exception {
+        final NotThreadSafe[] repo = new NotThreadSafe[1];
+        StandInMain main = new StandInMain() {
+            @Override
+            protected MavenRepository createRepository(String repoImpl) throws Exception {
+                return repo[0] = new NotThreadSafe(super.createRepository(repoImpl));
+            }
+        };
+        File www = new File(dir, "www");
+        assertEquals(0, main.run(new String[] {"-catalog", new File(dir, "catalog").getPath(), "-id", "test",
+                "-www", www.getPath(), "-resolveThreads", "8", "-prefetchDepth", "4"}));
+
+        assertTrue(repo[0].resolved.get() > 20);
+        assertFalse(repo[0].overlapped);
+        assertEquals(1, main.resolveThreads);
+        assertEquals(0, main.prefetchDepth);
+        assertTrue(new File(www, "update-center.json").exists());
+    }
+
+    public void testWrittenPluginsAreForgotten() throws Exception {
+        final Forgetting[] repo = new Forgetting[1];
+        StandInMain main = new StandInMain() {
+            @Override
+            protected MavenRepository createRepository(String repoImpl) throws Exception {
+                return repo[0] = new Forgetting(super.createRepository(repoImpl), 20);
+            }
+        };
+        // without prefetching, which keeps what it resolved for a while
+        assertEquals(0, main.run(new String[] {"-catalog", new File(dir, "catalog").getPath(), "-id", "test",
+                "-www", new File(dir, "www").getPath(), "-inFlight", "2", "-prefetchDepth", "0"}));
+
+        assertEquals(Boolean.TRUE, repo[0].forgotten);
+    }
+}
@@ -0,0 +1,383 @@
+package org.jenkins_ci.update_center.standin;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+
+/**
+ * Fabricates a catalog of plugins and cores for scale testing: a Maven layout repository of real, minimal HPI and
+ * WAR files, their POMs (with parents and SCM blocks), and a wiki dataset for {@link ConfluenceStandIn}.
+ * <p/>
+ * The output directory gets {@code repo/releases/...}, which {@link ArtifactoryStandIn} can serve, and
+ * {@code wiki.jsonl}. Everything is derived from the seed, so the same arguments always produce the same catalog,
+ * including the file timestamps that end up in the update center.
+ * <p/>
+ * The mix is meant to exercise all the code paths of the generator: most plugins declare their wiki page in the
+ * POM, others rely on the nearest title match (sometimes off by one character), a few have no page or a
+ * deprecated one, and some have their older releases under a non-Jenkins groupId.
+ */
+public class SyntheticCatalog {
+    @Option(name = "-out", required = true, usage = "Directory to generate the catalog into")
+    public File out;
+
+    @Option(name = "-plugins", usage = "Number of plugins")
+    public int plugins = 1000;
+
+    @Option(name = "-versions", usage = "Number of releases per plugin")
+    public int versions = 5;
+
+    @Option(name = "-cores", usage = "Number of jenkins.war releases")
+    public int cores = 20;
+
+    @Option(name = "-payload", usage = "Bytes of incompressible filler in each HPI, to model download and digest cost")
+    public int payload = 1024;
+
+    @Option(name = "-pageSize", usage = "Approximate number of characters of wiki markup per page")
+    public int pageSize = 2048;
+
+    @Option(name = "-seed", usage = "Random seed")
+    public long seed = 0;
+
+    /**
+     * Timestamp of the first release. Later releases are a day apart.
+     */
+    private static final long EPOCH = 1262304000000L; // 2010-01-01T00:00:00Z
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static final String WIKI_PREFIX = "https://wiki.jenkins-ci.org/display/JENKINS/";
+    private static final String PARENT_VERSION = "1.424";
+
+    private static final String[] WORDS = {
+            "build", "test", "deploy", "report", "notify", "scm", "cloud", "docker", "maven", "gradle", "ant",
+            "sonar", "coverage", "lint", "matrix", "pipeline", "trigger", "token", "cache", "artifact", "label",
+            "node", "queue", "view", "theme", "audit", "backup", "metrics", "mail", "chat", "ssh", "git",
+    };
+    private static final String[] LABELS = {
+            "plugin-builder", "plugin-report", "plugin-scm", "plugin-notifier", "plugin-misc", "plugin-ui",
+            "plugin-cluster", "plugin-upload",
+    };
+
+    private Random random;
+    private File repo;
+    private final List<String> ids = new ArrayList<String>();
+
+    public void generate() throws IOException {
+        random = new Random(seed);
+        repo = new File(out, "repo/releases");
+        repo.mkdirs();
+
+        for (int i = 0; i < plugins; i++) {
+            ids.add(pluginId(i));
+        }
+
+        writeParentPom();
+        generateCores();
+
+        PrintWriter wiki = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(out, "wiki.jsonl")),
+                "UTF-8"));
+        try {
+            JSONObject root = new JSONObject();
+            root.put("id", 1L);
+            root.put("title", "Plugins");
+            root.put("url", WIKI_PREFIX + "Plugins");
+            root.put("version", 1);
+            root.put("content", "The list of plugins.");
+            wiki.println(root);
+
+            for (int i = 0; i < plugins; i++) {
+                generatePlugin(i, wiki);
+            }
+        } finally {
+            wiki.close();
+        }
+    }
+
+    private String pluginId(int i) {
+        return WORDS[i % WORDS.length] + "-" + WORDS[(i / WORDS.length) % WORDS.length] + "-" + i;
+    }
+
+    private static String title(String id) {
+        StringBuilder b = new StringBuilder();
+        for (String w : id.split("-")) {
+            b.append(Character.toUpperCase(w.charAt(0))).append(w.substring(1)).append(' ');
+        }
+        return b.append("Plugin").toString();
+    }
+
+    private static String coreVersion(int i) {
+        return "1." + (400 + i);
+    }
+
+    private void generateCores() throws IOException {
+        // a few pre-fork releases, then Jenkins ones
+        for (int i = 0; i < 3; i++) {
+            String v = "1." + (393 + i);
+            writeWar("org.jvnet.hudson.main", "hudson-war", v, EPOCH + i * DAY);
+        }
+        for (int i = 0; i < cores; i++) {
+            writeWar("org.jenkins-ci.main", "jenkins-war", coreVersion(i), EPOCH + (3 + i) * DAY);
+        }
+    }
+
+    private void generatePlugin(int i, PrintWriter wiki) throws IOException {
+        String id = ids.get(i);
+        String title = title(id);
+
+        // how the wiki page is found
+        int kind = random.nextInt(100);
+        boolean hasPage = kind < 95;
+        boolean urlInPom = kind < 60;
+        String pageTitle = title;
+        if (kind >= 85 && kind < 95) {
+            // one character off, so that only the nearest match finds it
+            int pos = random.nextInt(id.indexOf('-'));
+            pageTitle = title(id.substring(0, pos) + id.substring(pos + 1));
+        }
+        String wikiUrl = WIKI_PREFIX + pageTitle.replace(' ', '+');
+
+        boolean legacy = random.nextInt(5) == 0;
+        String core = coreVersion(random.nextInt(Math.max(1, cores)));
+
+        for (int v = 0; v < versions; v++) {
+            String version = pluginVersion(v);
+            String groupId = legacy && v < versions / 3 ? "org.jvnet.hudson.plugins" : "org.jenkins-ci.plugins";
+            long timestamp = EPOCH + (i % 365 + v * 30L) * DAY + i;
+            writeHpi(groupId, id, title, version, core, i, timestamp);
+            writePom(groupId, id, title, version, urlInPom ? wikiUrl : null, v % 2 == 0);
+        }
+
+        if (hasPage) {
+            JSONObject page = new JSONObject();
+            page.put("id", 1000L + i);
+            page.put("title", pageTitle);
+            page.put("url", wikiUrl);
+            page.put("version", 1 + random.nextInt(50));
+            page.put("content", wikiContent(id));
+            JSONArray labels = new JSONArray();
+            labels.add(LABELS[random.nextInt(LABELS.length)]);
+            if (random.nextInt(33) == 0) {
+                labels.add("deprecated");
+            }
+            page.put("labels", labels);
+            wiki.println(page);
+        }
+    }
+
+    private static String pluginVersion(int v) {
+        String s = "1." + v;
+        if (v % 7 == 6) {
+            s += ".1";
+        }
+        return s;
+    }
+
+    private String wikiContent(String id) {
+        StringBuilder b = new StringBuilder();
+        b.append("{excerpt}This plugin integrates [").append(id).append("|http://example.org/").append(id)
+                .append("] with Jenkins.\nIt is generated for scale testing.{excerpt}\n\nh1. Usage\n");
+        while (b.length() < pageSize) {
+            b.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(8) == 0 ? ".\n" : " ");
+        }
+        return b.toString();
+    }
+
+    private File path(String groupId, String artifactId, String version, String ext) {
+        File dir = new File(repo, groupId.replace('.', '/') + "/" + artifactId + "/" + version);
+        dir.mkdirs();
+        return new File(dir, artifactId + "-" + version + "." + ext);
+    }
+
+    private void writeHpi(String groupId, String id, String title, String version, String core, int index,
+            long timestamp) throws IOException {
+        Manifest m = new Manifest();
+        Attributes a = m.getMainAttributes();
+        a.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        a.putValue("Created-By", "Synthetic catalog");
+        a.putValue("Built-By", "builder" + index % 17);
+        a.putValue("Group-Id", groupId);
+        a.putValue("Short-Name", id);
+        a.putValue("Long-Name", title);
+        a.putValue("Plugin-Version", version);
+        a.putValue("Jenkins-Version", core);
+        a.putValue("Hudson-Version", core);
+        a.putValue("Url", WIKI_PREFIX + title.replace(' ', '+'));
+
+        StringBuilder deps = new StringBuilder();
+        int n = index == 0 ? 0 : random.nextInt(4);
+        for (int d = 0; d < n; d++) {
+            if (deps.length() > 0) {
+                deps.append(',');
+            }
+            deps.append(ids.get(random.nextInt(index))).append(':').append(pluginVersion(random.nextInt(versions)));
+            if (random.nextInt(3) == 0) {
+                deps.append(";resolution:=optional");
+            }
+        }
+        if (deps.length() > 0) {
+            a.putValue("Plugin-Dependencies", deps.toString());
+        }
+
+        if (random.nextInt(10) != 0) {
+            StringBuilder devs = new StringBuilder();
+            int count = 1 + random.nextInt(3);
+            for (int d = 0; d < count; d++) {
+                if (d > 0) {
+                    devs.append(',');
+                }
+                int dev = random.nextInt(500);
+                devs.append("Developer ").append(dev).append(":dev").append(dev).append(":dev").append(dev)
+                        .append("@example.org");
+            }
+            a.putValue("Plugin-Developers", devs.toString());
+        }
+        if (random.nextInt(20) == 0) {
+            a.putValue("Compatible-Since-Version", "1.0");
+        }
+
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(path(groupId, id, version, "hpi")));
+        try {
+            // the generator takes the release date from the manifest entry, so write it by hand to control it
+            JarEntry e = new JarEntry("META-INF/MANIFEST.MF");
+            e.setTime(timestamp);
+            jar.putNextEntry(e);
+            m.write(jar);
+            jar.closeEntry();
+
+            e = new JarEntry("index.jelly");
+            e.setTime(timestamp);
+            jar.putNextEntry(e);
+            jar.write(("<div>" + title + "</div>").getBytes("UTF-8"));
+            jar.closeEntry();
+
+            e = new JarEntry("WEB-INF/lib/" + id + ".jar");
+            e.setTime(timestamp);
+            e.setMethod(JarEntry.STORED);
+            byte[] filler = new byte[payload];
+            random.nextBytes(filler);
+            CRC32 crc = new CRC32();
+            crc.update(filler);
+            e.setSize(filler.length);
+            e.setCrc(crc.getValue());
+            jar.putNextEntry(e);
+            jar.write(filler);
+            jar.closeEntry();
+        } finally {
+            jar.close();
+        }
+    }
+
+    private void writeWar(String groupId, String artifactId, String version, long timestamp) throws IOException {
+        Manifest m = new Manifest();
+        m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        m.getMainAttributes().putValue("Jenkins-Version", version);
+        m.getMainAttributes().putValue("Main-Class", "Main");
+
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(path(groupId, artifactId, version, "war")));
+        try {
+            JarEntry e = new JarEntry("META-INF/MANIFEST.MF");
+            e.setTime(timestamp);
+            jar.putNextEntry(e);
+            m.write(jar);
+            jar.closeEntry();
+        } finally {
+            jar.close();
+        }
+        write(path(groupId, artifactId, version, "pom"),
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                        "  <modelVersion>4.0.0</modelVersion>\n" +
+                        "  <groupId>" + groupId + "</groupId>\n" +
+                        "  <artifactId>" + artifactId + "</artifactId>\n" +
+                        "  <version>" + version + "</version>\n" +
+                        "  <packaging>war</packaging>\n" +
+                        "</project>\n");
+    }
+
+    private void writeParentPom() throws IOException {
+        write(path("org.jenkins-ci.plugins", "plugin", PARENT_VERSION, "pom"),
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                        "  <modelVersion>4.0.0</modelVersion>\n" +
+                        "  <groupId>org.jenkins-ci.plugins</groupId>\n" +
+                        "  <artifactId>plugin</artifactId>\n" +
+                        "  <version>" + PARENT_VERSION + "</version>\n" +
+                        "  <packaging>pom</packaging>\n" +
+                        "  <scm>\n" +
+                        "    <connection>scm:svn:https://svn.jenkins-ci.org/trunk/hudson/plugins/</connection>\n" +
+                        "  </scm>\n" +
+                        "</project>\n");
+    }
+
+    private void writePom(String groupId, String id, String title, String version, String url, boolean withScm)
+            throws IOException {
+        StringBuilder b = new StringBuilder();
+        b.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <parent>\n")
+                .append("    <groupId>org.jenkins-ci.plugins</groupId>\n")
+                .append("    <artifactId>plugin</artifactId>\n")
+                .append("    <version>").append(PARENT_VERSION).append("</version>\n")
+                .append("  </parent>\n")
+                .append("  <groupId>").append(groupId).append("</groupId>\n")
+                .append("  <artifactId>").append(id).append("</artifactId>\n")
+                .append("  <version>").append(version).append("</version>\n")
+                .append("  <packaging>hpi</packaging>\n")
+                .append("  <name>").append(title).append("</name>\n")
+                .append("  <description>Synthetic plugin &lt;").append(id).append("&gt; for scale testing")
+                .append("</description>\n");
+        if (url != null) {
+            b.append("  <url>").append(url).append("</url>\n");
+        }
+        if (withScm) {
+            b.append("  <scm>\n")
+                    .append("    <connection>scm:git:git://github.com/jenkinsci/").append(id)
+                    .append("-plugin.git</connection>\n")
+                    .append("  </scm>\n");
+        }
+        b.append("</project>\n");
+        write(path(groupId, id, version, "pom"), b.toString());
+    }
+
+    private static void write(File f, String content) throws IOException {
+        OutputStream o = new FileOutputStream(f);
+        try {
+            Writer w = new OutputStreamWriter(o, "UTF-8");
+            w.write(content);
+            w.flush();
+        } finally {
+            o.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SyntheticCatalog c = new SyntheticCatalog();
+        CmdLineParser p = new CmdLineParser(c);
+        try {
+            p.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            p.printUsage(System.err);
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        c.generate();
+        System.out.println("Generated " + c.plugins + " plugins x " + c.versions + " versions into " + c.out + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkins_ci.update_center.standin;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jenkins_ci.update_center.ConfluencePluginList;
+import org.jenkins_ci.update_center.model.HPI;
+import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.repo.ArtifactoryRepositoryImpl;
+
+import java.io.File;
+import java.util.Collection;
+
+public class SyntheticCatalogTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("catalog", "");
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testCatalogIsUsableByTheGenerator() throws Exception {
+        SyntheticCatalog c = new SyntheticCatalog();
+        c.out = dir;
+        c.plugins = 20;
+        c.versions = 4;
+        c.cores = 3;
+        c.generate();
+
+        ArtifactoryStandIn server = new ArtifactoryStandIn(new File(dir, "repo")).start(0);
+        try {
+            ArtifactoryRepositoryImpl r = new ArtifactoryRepositoryImpl(server.getUrl());
+            r.setLocalRepository(new File(dir, "local"));
+            Collection<PluginHistory> plugins = r.listHudsonPlugins();
+            assertEquals(20, plugins.size());
+            for (PluginHistory p : plugins) {
+                HPI latest = p.latest();
+                latest.file = r.resolve(latest.artifact);
+                assertEquals(p.artifactId, latest.getManifestAttributes().getValue("Short-Name"));
+                assertNotNull(latest.getRequiredJenkinsVersion());
+                latest.getDependencies();
+                latest.getDevelopers();
+                assertNotNull(r.resolvePOM(latest.artifact));
+            }
+            assertEquals(6, r.getHudsonWar().size());
+        } finally {
+            server.stop();
+        }
+
+        ConfluencePluginList wiki = new ConfluencePluginList(
+                new ConfluenceStandIn(new File(dir, "wiki.jsonl")).createService());
+        assertNotNull(wiki.findNearest("build-build-0"));
+    }
+}
@@ -23,7 +23,6 @@
  */
 package org.jenkins_ci.update_center.repo;
 
-import hudson.util.VersionNumber;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -49,6 +48,7 @@ import org.jenkins_ci.update_center.model.GenericArtifactInfo;
 import org.jenkins_ci.update_center.model.HPI;
 import org.jenkins_ci.update_center.model.HudsonWar;
 import org.jenkins_ci.update_center.model.PluginHistory;
+import org.jenkins_ci.update_center.model.VersionKey;
 import org.sonatype.nexus.index.ArtifactInfo;
 import org.sonatype.nexus.index.FlatSearchRequest;
 import org.sonatype.nexus.index.FlatSearchResponse;
@@ -184,7 +184,10 @@ public class NexusRepositoryImpl extends MavenRepository {
         }
     }
 
-    public File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
+    /**
+     * Synchronized, as the Maven 2 resolver and its wagons aren't thread-safe.
+     */
+    public synchronized File resolve(GenericArtifactInfo a, String type, String classifier) throws IOException {
         Artifact artifact = af.createArtifactWithClassifier(a.groupId, a.artifactId, a.version, type, classifier);
         try {
             ar.resolve(artifact, remoteRepositories, local);
@@ -194,6 +197,11 @@ public class NexusRepositoryImpl extends MavenRepository {
         return artifact.getFile();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     protected void listHudsonPlugins(Map<String, PluginHistory> plugins) throws IOException {
         BooleanQuery q = new BooleanQuery();
         q.add(indexer.constructQuery(ArtifactInfo.PACKAGING, "hpi"), Occur.MUST);
@@ -201,20 +209,17 @@ public class NexusRepositoryImpl extends MavenRepository {
         FlatSearchRequest request = new FlatSearchRequest(q);
         FlatSearchResponse response = indexer.searchFlat(request);
 
+        List<HPI> hpis = new ArrayList<HPI>();
         for (ArtifactInfo a : response.getResults()) {
             HPI hpiInfo = createHpiArtifact(a);
             if (isHpiValid(hpiInfo)) {
-                PluginHistory p = plugins.get(hpiInfo.artifact.artifactId);
-                if (p == null) {
-                    plugins.put(hpiInfo.artifact.artifactId, p = new PluginHistory(hpiInfo.artifact.artifactId));
-                }
-                p.addArtifact(hpiInfo);
-                p.groupId.add(hpiInfo.artifact.groupId);
+                hpis.add(hpiInfo);
             }
         }
+        addHudsonPlugins(plugins, hpis);
     }
 
-    protected void listWar(TreeMap<VersionNumber, HudsonWar> r, String groupId, VersionNumber cap) throws IOException {
+    protected void listWar(TreeMap<VersionKey, HudsonWar> r, String groupId, VersionKey cap) throws IOException {
         BooleanQuery q = new BooleanQuery();
         q.add(indexer.constructQuery(ArtifactInfo.GROUP_ID, groupId), Occur.MUST);
         q.add(indexer.constructQuery(ArtifactInfo.PACKAGING, "war"), Occur.MUST);
@@ -225,8 +230,7 @@ public class NexusRepositoryImpl extends MavenRepository {
         for (ArtifactInfo a : response.getResults()) {
             HudsonWar warInfo = createHudsonWarArtifact(a);
             if (isWarValid(warInfo, cap)) {
-                VersionNumber v = new VersionNumber(warInfo.version);
-                r.put(v, warInfo);
+                r.put(warInfo.getVersionKey(), warInfo);
             }
         }
     }